@@ -0,0 +1,60 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Parse throughput of the swipe path, from the bytes the SDK hands over
+* to a decoded CardData. Run with -prof gc, gc.alloc.rate.norm is the
+* allocation per swipe, expected to be 0 as buffers are reused.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CardParserBenchmark {
+
+    // Tracks 1 and 2 of a Visa card, as read by the reader
+    static final byte[] TRACKS = ("%B4111111111111111^CARDHOLDER/TEST A^2912101000000000000000000000000?"
+            + ";4111111111111111=29121010000000000000?").getBytes(StandardCharsets.US_ASCII);
+
+    // Track 2 alone, as read from a card with a damaged Track 1
+    static final byte[] TRACK2 = ";4111111111111111=29121010000000000000?".getBytes(StandardCharsets.US_ASCII);
+
+    private final CardParser parser = new CardParser();
+    private final CardData card = new CardData();
+
+    @Benchmark
+    public boolean parseTracks() {
+        return parser.parse(TRACKS, card);
+    }
+
+    @Benchmark
+    public boolean parseTrack2() {
+        return parser.parse(TRACK2, card);
+    }
+
+    /**
+    * Parses the card and wipes it once delivered, as the plugin does for
+    * every swipe.
+    */
+    @Benchmark
+    public int parseAndWipe() {
+        parser.parse(TRACKS, card);
+        int length = card.panLength;
+        card.wipe();
+        return length;
+    }
+}
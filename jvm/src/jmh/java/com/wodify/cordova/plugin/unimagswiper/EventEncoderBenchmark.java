@@ -0,0 +1,64 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+* Serialization of events for the WebView: a decoded card written as
+* swipe_success data, the JSON message holding it in an event channel
+* batch, and a plain event formatted as JavaScript for the legacy path.
+* Run with -prof gc for the bytes allocated per event.
+*/
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EventEncoderBenchmark {
+
+    private final CardData card = new CardData();
+    private final CardEncoder encoder = new CardEncoder();
+
+    // Reused like the event channel's pending batch
+    private final StringBuilder batch = new StringBuilder(1024);
+
+    @Setup
+    public void parseCard() {
+        new CardParser().parse(CardParserBenchmark.TRACKS, card);
+    }
+
+    @Benchmark
+    public int encodeCard() {
+        batch.setLength(0);
+        encoder.set(card).appendTo(batch);
+        return batch.length();
+    }
+
+    @Benchmark
+    public int encodeSwipeMessage() {
+        batch.setLength(0);
+        EventEncoder.appendMessage(batch, "swipe_success", encoder.set(card, 42));
+        return batch.length();
+    }
+
+    @Benchmark
+    public String encodeCardString() {
+        return encoder.set(card).toJSONString();
+    }
+
+    @Benchmark
+    public String encodeJavascript() {
+        return EventEncoder.toJavascript("timeout", "Swipe card timed out.");
+    }
+}
@@ -0,0 +1,116 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xmlpull.v1.XmlPullParserException;
+
+import IDTech.MSR.XMLManager.StructConfigParameters;
+
+/**
+* Profile serialization: an Auto Config profile flattened and rebuilt, the
+* profile store written and read as storeAutoConfigProfile and
+* loadAutoConfigProfile do, and the device index compiled from the
+* bundled XML file and looked up.
+*/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProfileBenchmark {
+
+    // Bundled XML file, relative to this module
+    private static final File XML_FILE = new File("../src/android/idt_unimagcfg.xml");
+
+    private StructConfigParameters profile;
+    private int[] fields;
+    private ProfileStore store;
+    private ProfileIndex index;
+    private File storeFile;
+    private File indexFile;
+    private final DiagnosticLog log = new DiagnosticLog(16);
+
+    @Setup
+    public void setUp() throws IOException, XmlPullParserException {
+        profile = new StructConfigParameters();
+        profile.setFrequenceInput(48000);
+        profile.setFrequenceOutput(48000);
+        profile.setRecordBufferSize(4096);
+        profile.setBaudRate(9600);
+        fields = ProfileCodec.toFields(profile);
+
+        // A store about as large as a device ever keeps
+        store = new ProfileStore();
+        for (int i = 0; i < 8; i++) {
+            store.put(ProfileStore.key("samsung", "SM-G99" + i, 30, "UM_PRO"), fields);
+        }
+        storeFile = File.createTempFile("profiles", ".bin");
+        store.write(storeFile, log);
+
+        index = compileIndex();
+        indexFile = File.createTempFile("index", ".bin");
+        index.write(indexFile, log);
+    }
+
+    @TearDown
+    public void tearDown() {
+        storeFile.delete();
+        indexFile.delete();
+    }
+
+    @Benchmark
+    public int[] encodeProfile() {
+        return ProfileCodec.toFields(profile);
+    }
+
+    @Benchmark
+    public StructConfigParameters decodeProfile() {
+        return ProfileCodec.fromFields(fields);
+    }
+
+    @Benchmark
+    public boolean writeStore() {
+        return store.write(storeFile, log);
+    }
+
+    @Benchmark
+    public int readStore() {
+        return ProfileStore.read(storeFile, log).size();
+    }
+
+    @Benchmark
+    public ProfileIndex compileIndex() throws IOException, XmlPullParserException {
+        InputStream xml = new FileInputStream(XML_FILE);
+        try {
+            return ProfileIndex.compile(xml, 1);
+        } finally {
+            xml.close();
+        }
+    }
+
+    @Benchmark
+    public int readIndex() {
+        return ProfileIndex.read(indexFile, 1, log).size();
+    }
+
+    @Benchmark
+    public int[] lookupIndex() {
+        return index.lookup("samsung", "SM-G900F", "um2");
+    }
+}
@@ -0,0 +1,43 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class CardBrandsTest {
+
+    @Test
+    public void findsBrandsByPrefix() {
+        assertEquals(CardBrands.VISA, lookup("4111111111111111"));
+        assertEquals(CardBrands.MASTERCARD, lookup("5555555555554444"));
+        assertEquals(CardBrands.MASTERCARD, lookup("2221000000000009"));
+        assertEquals(CardBrands.AMEX, lookup("378282246310005"));
+        assertEquals(CardBrands.DISCOVER, lookup("6011111111111117"));
+        assertEquals(CardBrands.DINERS, lookup("36227206271667"));
+        assertEquals(CardBrands.JCB, lookup("3530111333300000"));
+        assertEquals(CardBrands.MAESTRO, lookup("6759649826438453"));
+        assertEquals(CardBrands.MIR, lookup("2200000000000004"));
+        assertEquals(CardBrands.UNKNOWN, lookup("9999999999999999"));
+    }
+
+    @Test
+    public void narrowestRangeWinsWhereRangesOverlap() {
+        // Discover's 622126-622925 lies within UnionPay's 62
+        assertEquals(CardBrands.UNIONPAY, lookup("6221259999999999"));
+        assertEquals(CardBrands.DISCOVER, lookup("6221260000000000"));
+        assertEquals(CardBrands.DISCOVER, lookup("6229259999999999"));
+        assertEquals(CardBrands.UNIONPAY, lookup("6229260000000000"));
+        assertEquals(CardBrands.UNIONPAY, lookup("6200000000000005"));
+    }
+
+    @Test
+    public void findsMaskedPanFromLeadingDigits() {
+        assertEquals(CardBrands.DISCOVER, lookup("622126******1234"));
+        assertEquals(CardBrands.VISA, lookup("411111******1111"));
+        assertEquals(CardBrands.UNKNOWN, lookup("4111********1111"));
+    }
+
+    private static int lookup(String pan) {
+        return CardBrands.lookup(pan.toCharArray(), pan.length());
+    }
+}
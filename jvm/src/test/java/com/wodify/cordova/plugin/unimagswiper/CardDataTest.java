@@ -0,0 +1,49 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CardDataTest {
+
+    private static final String LONG_SWIPE = "%B4111111111111111^CARDHOLDER/TEST A^2912101000000000000?"
+            + ";4111111111111111=29121010000000000?";
+
+    private static final String SHORT_SWIPE = "%B378282246310005^AMEX/B^2912101000000000000?";
+
+    private final CardParser parser = new CardParser();
+
+    @Test
+    public void copyZeroesWhatShorterSwipeLeaves() {
+        CardData copy = new CardData();
+        copy.copyFrom(parse(LONG_SWIPE));
+        int longLength = copy.trimmedLength;
+
+        copy.copyFrom(parse(SHORT_SWIPE));
+
+        assertEquals("378282246310005", new String(copy.pan, 0, copy.panLength));
+        assertEquals("B", new String(copy.firstName, 0, copy.firstNameLength));
+        assertEquals("AMEX", new String(copy.lastName, 0, copy.lastNameLength));
+        assertZeroed(copy.pan, copy.panLength);
+        assertZeroed(copy.firstName, copy.firstNameLength);
+        assertZeroed(copy.lastName, copy.lastNameLength);
+        for (int i = copy.trimmedLength; i < longLength; i++) {
+            assertEquals("Raw byte " + i, 0, copy.trimmed[i]);
+        }
+    }
+
+    private CardData parse(String swipe) {
+        CardData card = new CardData();
+        assertTrue(parser.parse(swipe.getBytes(StandardCharsets.US_ASCII), card));
+        return card;
+    }
+
+    private static void assertZeroed(char[] buffer, int from) {
+        for (int i = from; i < buffer.length; i++) {
+            assertEquals("Char " + i, '\0', buffer[i]);
+        }
+    }
+}
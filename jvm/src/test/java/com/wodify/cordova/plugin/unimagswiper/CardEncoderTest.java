@@ -0,0 +1,76 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class CardEncoderTest {
+
+    private static final String TRACKS = "%B4111111111111111^CARDHOLDER/TEST A^2912101000000000000?"
+            + ";4111111111111111=29121010000000000?";
+
+    // Encodings measured, after as many to warm up
+    private static final int ENCODINGS = 10000;
+
+    private final CardData card = new CardData();
+    private final CardEncoder encoder = new CardEncoder();
+
+    @Test
+    public void encodesCardAsQuotedObject() throws Exception {
+        parse();
+        StringBuilder json = new StringBuilder();
+        encoder.set(card, 7).appendTo(json);
+
+        JSONObject object = new JSONObject((String) new JSONObject("{\"data\":" + json + "}").get("data"));
+        assertEquals("4111111111111111", object.getString("card_number"));
+        assertEquals("TEST A", object.getString("first_name"));
+        assertEquals("CARDHOLDER", object.getString("last_name"));
+        assertEquals(7, object.getLong("swipe_id"));
+    }
+
+    @Test
+    public void encodingIntoBatchAllocatesNothing() {
+        com.sun.management.ThreadMXBean threads = hotspotThreads();
+        long thread = Thread.currentThread().getId();
+        parse();
+
+        // Reused like the event channel's pending batch
+        StringBuilder batch = new StringBuilder(1024);
+        encode(batch);
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        encode(batch);
+        long perEncoding = (threads.getThreadAllocatedBytes(thread) - before) / ENCODINGS;
+
+        assertEquals("Bytes allocated per encoding", 0, perEncoding);
+    }
+
+    private void parse() {
+        assertTrue(new CardParser().parse(TRACKS.getBytes(StandardCharsets.US_ASCII), card));
+    }
+
+    private void encode(StringBuilder batch) {
+        for (int i = 0; i < ENCODINGS; i++) {
+            batch.setLength(0);
+            encoder.set(card).appendTo(batch);
+        }
+    }
+
+    /**
+    * Skips the test on JVMs not measuring allocation per thread.
+    */
+    private static com.sun.management.ThreadMXBean hotspotThreads() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled());
+        return hotspot;
+    }
+}
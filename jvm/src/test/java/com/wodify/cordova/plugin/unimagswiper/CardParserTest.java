@@ -0,0 +1,193 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class CardParserTest {
+
+    private static final String PAN = "4111111111111111";
+    private static final String TRACK1 = "%B" + PAN + "^CARDHOLDER/TEST A^2912101000000000000?";
+    private static final String TRACK2 = ";" + PAN + "=29121010000000000?";
+
+    // Format code, PAN, country and currency codes, then fixed fields
+    private static final String TRACK3 =
+            ";01" + PAN + "=8408400000100000010000000000000000000000000000000000=00000000000?";
+
+    private final CardParser parser = new CardParser();
+    private final CardData card = new CardData();
+
+    @Test
+    public void parsesBothTracks() {
+        assertTrue(parse(TRACK1 + TRACK2));
+
+        assertEquals(PAN, new String(card.pan, 0, card.panLength));
+        assertEquals("2912", new String(card.expiry));
+        assertEquals("CARDHOLDER", new String(card.lastName, 0, card.lastNameLength));
+        assertEquals("TEST A", new String(card.firstName, 0, card.firstNameLength));
+        assertEquals(CardBrands.VISA, card.brand);
+        assertTrue(card.luhnValid);
+        assertTrue(card.track1Present);
+        assertTrue(card.track2Present);
+        assertEquals(CardData.LRC_ABSENT, card.track1Lrc);
+        assertEquals(CardData.LRC_ABSENT, card.track2Lrc);
+    }
+
+    @Test
+    public void parsesTrack2Alone() {
+        assertTrue(parse(TRACK2));
+
+        assertEquals(PAN, new String(card.pan, 0, card.panLength));
+        assertFalse(card.hasName());
+        assertFalse(card.track1Present);
+    }
+
+    @Test
+    public void keepsTrack3AloneOutOfCardFields() {
+        assertFalse(parse(TRACK3));
+
+        assertTrue(card.track3Present);
+        assertFalse(card.track2Present);
+        assertEquals(0, card.panLength);
+        assertFalse(card.luhnValid);
+    }
+
+    @Test
+    public void parsesTrack1WithTrack3() {
+        assertTrue(parse(TRACK1 + TRACK3));
+
+        assertEquals(PAN, new String(card.pan, 0, card.panLength));
+        assertFalse(card.track2Present);
+        assertTrue(card.track3Present);
+    }
+
+    @Test
+    public void parsesAllThreeTracks() {
+        assertTrue(parse(TRACK1 + TRACK2 + TRACK3));
+
+        assertTrue(card.track2Present);
+        assertTrue(card.track3Present);
+        assertEquals(TRACK2.length(), card.track2Length);
+        assertEquals(TRACK3.length(), card.track3Length);
+    }
+
+    @Test
+    public void acceptsValidLrcAtEndOfData() {
+        assertTrue(parse(TRACK2 + lrc2(TRACK2)));
+
+        assertEquals(CardData.LRC_VALID, card.track2Lrc);
+    }
+
+    @Test
+    public void acceptsValidLrcBeforeNextTrack() {
+        assertTrue(parse(TRACK1 + lrc1(TRACK1) + TRACK2 + lrc2(TRACK2)));
+
+        assertEquals(CardData.LRC_VALID, card.track1Lrc);
+        assertEquals(CardData.LRC_VALID, card.track2Lrc);
+    }
+
+    @Test
+    public void acceptsLrcFollowedByWhitespace() {
+        assertTrue(parse(TRACK2 + lrc2(TRACK2) + "\r\n"));
+
+        assertEquals(CardData.LRC_VALID, card.track2Lrc);
+    }
+
+    @Test
+    public void rejectsTrackWithWrongLrc() {
+        char wrong = (char) (lrc2(TRACK2) ^ 1);
+
+        assertFalse(parse(TRACK2 + wrong));
+        assertTrue(card.track2Present);
+        assertEquals(CardData.LRC_INVALID, card.track2Lrc);
+    }
+
+    @Test
+    public void ignoresDataAfterEndSentinel() {
+        // Valid track characters, but not the last byte of the track
+        assertTrue(parse(TRACK2 + "55"));
+
+        assertEquals(CardData.LRC_ABSENT, card.track2Lrc);
+        assertEquals(PAN, new String(card.pan, 0, card.panLength));
+    }
+
+    @Test
+    public void ignoresDataAfterEndSentinelBeforeNextTrack() {
+        assertTrue(parse(TRACK1 + "AB" + TRACK2));
+
+        assertEquals(CardData.LRC_ABSENT, card.track1Lrc);
+        assertTrue(card.hasName());
+        assertTrue(card.track2Present);
+    }
+
+    @Test
+    public void restartsOnTrackCutShort() {
+        assertTrue(parse("%B41111111" + TRACK2));
+
+        assertFalse(card.track1Present);
+        assertEquals(PAN, new String(card.pan, 0, card.panLength));
+    }
+
+    @Test
+    public void rejectsDataWithoutExpiry() {
+        assertFalse(parse(";" + PAN + "=?"));
+    }
+
+    @Test
+    public void rejectsWrongLuhnDigit() {
+        assertTrue(parse(";4111111111111112=29121010000000000?"));
+
+        assertFalse(card.luhnValid);
+    }
+
+    @Test
+    public void acceptsMaskedPan() {
+        byte[] masked = ";411111******1111=2912?".getBytes(StandardCharsets.US_ASCII);
+
+        assertTrue(parser.parseMasked(masked, 0, masked.length, card));
+        assertEquals("411111******1111", new String(card.pan, 0, card.panLength));
+        assertFalse(card.luhnValid);
+    }
+
+    @Test
+    public void rejectsMaskedPanOutsideMaskedTracks() {
+        assertFalse(parse(";411111******1111=2912?"));
+    }
+
+    @Test
+    public void keepsTrimmedData() {
+        assertTrue(parse(" " + TRACK2 + "\n"));
+
+        assertEquals(TRACK2, new String(card.trimmed, 0, card.trimmedLength, StandardCharsets.US_ASCII));
+    }
+
+    private boolean parse(String data) {
+        return parser.parse(data.getBytes(StandardCharsets.US_ASCII), card);
+    }
+
+    /**
+    * LRC of a Track 1, 6-bit characters from start to end sentinel.
+    */
+    private static char lrc1(String track) {
+        int lrc = 0;
+        for (int i = 0; i < track.length(); i++) {
+            lrc ^= (track.charAt(i) - 0x20) & 0x3f;
+        }
+        return (char) (lrc + 0x20);
+    }
+
+    /**
+    * LRC of a Track 2, 4-bit characters from start to end sentinel.
+    */
+    private static char lrc2(String track) {
+        int lrc = 0;
+        for (int i = 0; i < track.length(); i++) {
+            lrc ^= (track.charAt(i) - 0x30) & 0x0f;
+        }
+        return (char) (lrc + 0x30);
+    }
+}
@@ -0,0 +1,229 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+public class DuplicateFilterTest {
+
+    private static final long WINDOW_MS = 1000;
+    private static final long WINDOW_NANOS = WINDOW_MS * 1000000L;
+
+    // Swipes compared against the reference, over more cards than fit
+    private static final int SWIPES = 200000;
+    private static final int CARDS = DuplicateFilter.CAPACITY * 3;
+
+    private static final byte[] TRACK2 = ";4111111111111111=29121010000000000?".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] OTHER_TRACK2 = ";5555555555554444=29121010000000000?".getBytes(StandardCharsets.US_ASCII);
+
+    // Time allowed for an event, in milliseconds
+    private static final long EVENT_TIMEOUT_MS = 5000;
+
+    @Rule
+    public final TemporaryFolder files = new TemporaryFolder();
+
+    private final CardData card = new CardData();
+
+    @Test
+    public void matchesReferenceLru() throws Exception {
+        DuplicateFilter filter = new DuplicateFilter(WINDOW_MS, DuplicateFilter.TAG);
+
+        // Access ordered, so the eldest entry is the least recently seen
+        Map<Integer, Long> reference = new LinkedHashMap<Integer, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+                return size() > DuplicateFilter.CAPACITY;
+            }
+        };
+
+        Random random = new Random(7813);
+        long time = 0;
+        int duplicates = 0;
+        for (int i = 0; i < SWIPES; i++) {
+            int index = random.nextInt(CARDS);
+            time += random.nextInt((int) (WINDOW_NANOS / 8));
+
+            Long seenAt = reference.put(index, time);
+            boolean expected = seenAt != null && time - seenAt <= WINDOW_NANOS;
+            if (expected) {
+                duplicates++;
+            }
+
+            assertEquals("Swipe " + i + " of card " + index, expected, filter.check(card(index), time));
+        }
+
+        assertEquals(duplicates, filter.getDuplicateCount());
+        assertTrue(duplicates > 0 && duplicates < SWIPES);
+    }
+
+    @Test
+    public void duplicateRestartsWindow() throws Exception {
+        DuplicateFilter filter = new DuplicateFilter(WINDOW_MS, DuplicateFilter.DROP);
+
+        assertFalse(filter.check(card(0), 0));
+        assertTrue(filter.check(card(0), WINDOW_NANOS));
+        assertTrue(filter.check(card(0), 2 * WINDOW_NANOS));
+        assertFalse(filter.check(card(0), 3 * WINDOW_NANOS + 1));
+        assertFalse(filter.check(card(1), 3 * WINDOW_NANOS + 1));
+        assertEquals(2, filter.getDuplicateCount());
+    }
+
+    @Test
+    public void tellsCardsByExpiryToo() throws Exception {
+        DuplicateFilter filter = new DuplicateFilter(WINDOW_MS, DuplicateFilter.DROP);
+
+        assertFalse(filter.check(card(0), 0));
+        card.expiry[3]++;
+        assertFalse(filter.check(card, 1));
+    }
+
+    @Test
+    public void parsesModes() {
+        assertEquals(DuplicateFilter.DROP, DuplicateFilter.parseMode("drop"));
+        assertEquals(DuplicateFilter.TAG, DuplicateFilter.parseMode("tag"));
+        assertEquals(-1, DuplicateFilter.parseMode("DROP"));
+        assertEquals(-1, DuplicateFilter.parseMode(null));
+    }
+
+    @Test
+    public void dropModeSwallowsDuplicate() throws Exception {
+        Swiper swiper = new Swiper("drop");
+        try {
+            swiper.swipe();
+            swiper.awaitEvents("swipe_success", 1);
+            swiper.swipe();
+            swiper.swipe();
+
+            // Handled in order, so the other card comes right after the first
+            swiper.swipe(OTHER_TRACK2);
+            swiper.awaitEvents("swipe_success", 2);
+
+            assertEquals(2, swiper.count("swipe_success"));
+            assertEquals(swiper.count("5555555555554444"), swiper.count("4111111111111111"));
+            assertEquals(0, swiper.count("duplicate"));
+        } finally {
+            swiper.destroy();
+        }
+    }
+
+    @Test
+    public void tagModeDeliversTaggedDuplicate() throws Exception {
+        Swiper swiper = new Swiper("tag");
+        try {
+            swiper.swipe();
+            swiper.awaitEvents("swipe_success", 1);
+            swiper.swipe();
+            swiper.awaitEvents("swipe_success", 2);
+
+            assertEquals(1, swiper.count("duplicate"));
+        } finally {
+            swiper.destroy();
+        }
+    }
+
+    /**
+    * Sets the card to one of CARDS distinct PANs.
+    */
+    private CardData card(int index) {
+        String pan = "4" + String.format("%015d", index * 7919L);
+        pan.getChars(0, pan.length(), card.pan, 0);
+        card.panLength = pan.length();
+        "2912".getChars(0, 4, card.expiry, 0);
+        card.hasExpiry = true;
+        return card;
+    }
+
+    /**
+    * Plugin connected to a simulated reader, its events collected.
+    */
+    private class Swiper {
+        private final UnimagSwiper plugin = new UnimagSwiper();
+        private final StringBuffer events = new StringBuffer();
+
+        Swiper(String mode) throws Exception {
+            String script = "connect 0 to_connect\nconnect 0 connected\n";
+            plugin.setDriverFactory(SimulatedDriver.factory(SimulatedDriver.Script.read(new StringReader(script)), 1));
+            plugin.attach(new TestContext(files.getRoot(), new File("../src/android/idt_unimagcfg.xml")));
+
+            plugin.execute("registerEventChannel", new JSONArray(), new Callback() {
+                @Override
+                void onMessage(String message) {
+                    synchronized (events) {
+                        events.append(message);
+                        events.notifyAll();
+                    }
+                }
+            });
+            plugin.execute("configureDuplicateFilter", new JSONArray().put(60000).put(mode), new Callback());
+            plugin.execute("setPlugDebounce", new JSONArray().put(0), new Callback());
+            plugin.execute("setReaderType", new JSONArray().put("UM_II"), new Callback());
+
+            plugin.simulateHeadsetPlug(true);
+            awaitEvents("\"connected\"", 1);
+        }
+
+        void swipe() {
+            swipe(TRACK2);
+        }
+
+        void swipe(byte[] track2) {
+            plugin.simulateCardData((byte) 0, track2.clone());
+        }
+
+        void destroy() {
+            plugin.onDestroy();
+        }
+
+        void awaitEvents(String token, int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + EVENT_TIMEOUT_MS;
+            synchronized (events) {
+                while (count(token) < count && System.currentTimeMillis() < deadline) {
+                    events.wait(100);
+                }
+            }
+            assertTrue("Waited for " + count + " " + token, count(token) >= count);
+        }
+
+        int count(String token) {
+            String text = events.toString();
+            int count = 0;
+            for (int at = text.indexOf(token); at >= 0; at = text.indexOf(token, at + token.length())) {
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+    * Callback standing in for the WebView.
+    */
+    private static class Callback extends CallbackContext {
+        Callback() {
+            super("test", null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            if (result.getMessageType() == PluginResult.MESSAGE_TYPE_STRING) {
+                onMessage(result.getStrMessage());
+            }
+        }
+
+        void onMessage(String message) {}
+    }
+}
@@ -0,0 +1,107 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DutyCycleTest {
+
+    private static final long SECOND = 1000000000L;
+
+    // Times start here, as 0 stands for no stretch being counted
+    private static final long START = 1000 * SECOND;
+
+    private final DutyCycle cycle = new DutyCycle();
+
+    @Before
+    public void start() {
+        cycle.setSwipeTimeout(20);
+        cycle.recordActivity(START);
+    }
+
+    @Test
+    public void staysActiveWithoutIdleDelay() {
+        assertEquals(0, cycle.onQuietTimeout(START + 3600 * SECOND));
+        assertEquals(DutyCycle.ACTIVE, cycle.getPhase());
+        assertEquals(20, cycle.getArmTimeoutSeconds());
+    }
+
+    @Test
+    public void goesIdleAfterDelayAndDoublesSleepUpToMax() {
+        cycle.configureIdle(60000, 5, 30000);
+
+        assertEquals(0, cycle.onQuietTimeout(START + 59 * SECOND));
+        assertEquals(DutyCycle.ACTIVE, cycle.getPhase());
+
+        // First sleep as long as a listening window
+        assertEquals(5 * SECOND, cycle.onQuietTimeout(START + 60 * SECOND));
+        assertEquals(DutyCycle.IDLE, cycle.getPhase());
+        assertEquals(5, cycle.getArmTimeoutSeconds());
+        assertEquals(1, cycle.getIdleCount());
+
+        assertEquals(10 * SECOND, cycle.onQuietTimeout(START + 70 * SECOND));
+        assertEquals(20 * SECOND, cycle.onQuietTimeout(START + 85 * SECOND));
+        assertEquals(30 * SECOND, cycle.onQuietTimeout(START + 110 * SECOND));
+        assertEquals(30 * SECOND, cycle.onQuietTimeout(START + 145 * SECOND));
+        assertEquals(1, cycle.getIdleCount());
+    }
+
+    @Test
+    public void firstSleepIsCappedToo() {
+        cycle.configureIdle(1000, 5, 2000);
+
+        assertEquals(2 * SECOND, cycle.onQuietTimeout(START + SECOND));
+        assertEquals(2 * SECOND, cycle.onQuietTimeout(START + 10 * SECOND));
+    }
+
+    @Test
+    public void suspendsWithoutMaxSleep() {
+        cycle.configureIdle(1000, 5, 0);
+
+        assertEquals(-1, cycle.onQuietTimeout(START + SECOND));
+        assertEquals(DutyCycle.SUSPENDED, cycle.getPhase());
+        assertEquals(-1, cycle.onQuietTimeout(START + 2 * SECOND));
+        assertEquals(1, cycle.getIdleCount());
+    }
+
+    @Test
+    public void activityWakesAndRestartsSchedule() {
+        cycle.configureIdle(1000, 5, 30000);
+        cycle.onQuietTimeout(START + SECOND);
+        cycle.onQuietTimeout(START + 10 * SECOND);
+
+        assertTrue(cycle.recordActivity(START + 20 * SECOND));
+        assertFalse(cycle.recordActivity(START + 21 * SECOND));
+        assertEquals(DutyCycle.ACTIVE, cycle.getPhase());
+        assertEquals(20, cycle.getArmTimeoutSeconds());
+        assertEquals(1, cycle.getWakeCount());
+
+        // The idle delay counts from the last activity, sleeps start over
+        assertEquals(0, cycle.onQuietTimeout(START + 21 * SECOND + SECOND / 2));
+        assertEquals(5 * SECOND, cycle.onQuietTimeout(START + 22 * SECOND));
+        assertEquals(2, cycle.getIdleCount());
+    }
+
+    @Test
+    public void accountsListeningAndWaiting() {
+        cycle.recordReaderState(true, true, START);
+        assertEquals(3 * SECOND, cycle.getListeningNanos(START + 3 * SECOND));
+        assertEquals(0, cycle.getWaitingNanos(START + 3 * SECOND));
+
+        cycle.recordReaderState(false, true, START + 4 * SECOND);
+        cycle.recordReaderState(true, true, START + 10 * SECOND);
+        cycle.recordReaderState(false, false, START + 12 * SECOND);
+
+        // Nothing counts while disconnected
+        long later = START + 100 * SECOND;
+        assertEquals(6 * SECOND, cycle.getListeningNanos(later));
+        assertEquals(6 * SECOND, cycle.getWaitingNanos(later));
+
+        cycle.recordReaderState(false, true, later);
+        assertEquals(6 * SECOND, cycle.getListeningNanos(later + SECOND));
+        assertEquals(7 * SECOND, cycle.getWaitingNanos(later + SECOND));
+    }
+}
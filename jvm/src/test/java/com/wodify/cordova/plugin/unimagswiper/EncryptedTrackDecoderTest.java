@@ -0,0 +1,261 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class EncryptedTrackDecoderTest {
+
+    private static final String MASKED_TRACK1 = "%B4111********1111^CARDHOLDER/TEST A^2912*************?";
+    private static final String MASKED_TRACK2 = ";4111********1111=2912*************?";
+    private static final String[] TRACKS = { MASKED_TRACK1, MASKED_TRACK2, null };
+
+    // Cipher block sizes of TDES and AES
+    private static final int TDES = 8;
+    private static final int AES = 16;
+
+    // Header bytes
+    private static final int CARD_TYPE = 0x80;
+    private static final int TRACK_STATUS = 0x3f;
+
+    // Bits of the masked and encrypted data status bytes
+    private static final int TRACK1 = 0x01;
+    private static final int TRACK2 = 0x02;
+    private static final int HASHES = 0x08;
+    private static final int SESSION_ID = 0x40;
+    private static final int KSN = 0x80;
+
+    // Positions of the frame trailer from its end
+    private static final int LRC_FROM_END = 3;
+    private static final int CHECKSUM_FROM_END = 2;
+
+    private final CardParser parser = new CardParser();
+    private final EncryptedTrackDecoder decoder = new EncryptedTrackDecoder(parser);
+    private final CardData card = new CardData();
+
+    @Test
+    public void decodesTdesFrame() {
+        int status = TRACK1 | TRACK2;
+        byte[] frame = frame(TRACKS, status, status | status * HASHES | KSN, TDES);
+        assertTrue(decoder.decode(frame, card));
+
+        assertEquals("4111********1111", new String(card.pan, 0, card.panLength));
+        assertEquals("2912", new String(card.expiry));
+        assertEquals("CARDHOLDER", new String(card.lastName, 0, card.lastNameLength));
+        assertFalse(card.luhnValid);
+
+        EncryptedTracks encrypted = card.encrypted;
+        assertTrue(encrypted.present);
+        assertEquals(CARD_TYPE, encrypted.cardType);
+        assertEquals(TRACK_STATUS, encrypted.trackStatus);
+        assertEquals(frame.length, encrypted.frameLength);
+
+        assertField(MASKED_TRACK1.getBytes(StandardCharsets.US_ASCII), EncryptedTracks.MASKED_TRACK1);
+        assertField(MASKED_TRACK2.getBytes(StandardCharsets.US_ASCII), EncryptedTracks.MASKED_TRACK2);
+        assertField(fill(56, 0xe1), EncryptedTracks.ENCRYPTED_TRACK1);
+        assertField(fill(40, 0xe2), EncryptedTracks.ENCRYPTED_TRACK2);
+        assertField(fill(20, 0xa1), EncryptedTracks.HASH_TRACK1);
+        assertField(fill(20, 0xa2), EncryptedTracks.HASH_TRACK2);
+        assertField(ksn(), EncryptedTracks.KSN);
+        assertEquals(0, encrypted.lengths[EncryptedTracks.MASKED_TRACK3]);
+        assertEquals(0, encrypted.lengths[EncryptedTracks.ENCRYPTED_TRACK3]);
+        assertEquals(0, encrypted.lengths[EncryptedTracks.SESSION_ID]);
+    }
+
+    @Test
+    public void detectsAesBlockSize() {
+        int status = TRACK1 | TRACK2;
+        assertTrue(decoder.decode(frame(TRACKS, status, status | SESSION_ID | KSN, AES), card));
+
+        assertField(fill(64, 0xe1), EncryptedTracks.ENCRYPTED_TRACK1);
+        assertField(fill(48, 0xe2), EncryptedTracks.ENCRYPTED_TRACK2);
+        assertField(fill(8, 0x5e), EncryptedTracks.SESSION_ID);
+        assertField(ksn(), EncryptedTracks.KSN);
+        assertEquals(0, card.encrypted.lengths[EncryptedTracks.HASH_TRACK1]);
+    }
+
+    @Test
+    public void acceptsEncryptedTracksWithoutMaskedFields() {
+        assertTrue(decoder.decode(frame(TRACKS, 0, TRACK2 | KSN, TDES), card));
+
+        assertEquals(0, card.panLength);
+        assertEquals(0, card.encrypted.lengths[EncryptedTracks.MASKED_TRACK2]);
+        assertField(fill(40, 0xe2), EncryptedTracks.ENCRYPTED_TRACK2);
+    }
+
+    @Test
+    public void rejectsFrameWithoutCardData() {
+        assertFalse(decoder.decode(frame(TRACKS, 0, KSN, TDES), card));
+    }
+
+    @Test
+    public void rejectsWrongLrc() {
+        byte[] frame = validFrame();
+        frame[frame.length - LRC_FROM_END] ^= 0x01;
+        assertRejected(frame);
+    }
+
+    @Test
+    public void rejectsWrongChecksum() {
+        byte[] frame = validFrame();
+        frame[frame.length - CHECKSUM_FROM_END]++;
+        assertRejected(frame);
+    }
+
+    @Test
+    public void rejectsCorruptData() {
+        // The same bits flipped in two bytes keep the LRC, not the checksum
+        byte[] frame = validFrame();
+        frame[20] ^= 0x03;
+        frame[21] ^= 0x03;
+        assertRejected(frame);
+    }
+
+    @Test
+    public void rejectsFrameCutShort() {
+        byte[] frame = validFrame();
+        byte[] cut = new byte[frame.length - 1];
+        System.arraycopy(frame, 0, cut, 0, cut.length);
+        assertRejected(cut);
+    }
+
+    @Test
+    public void rejectsMissingDelimiters() {
+        byte[] frame = validFrame();
+        frame[0] = 0x01;
+        assertRejected(frame);
+
+        frame = validFrame();
+        frame[frame.length - 1] = 0x04;
+        assertRejected(frame);
+    }
+
+    @Test
+    public void rejectsFieldsNotAddingUp() {
+        int status = TRACK1 | TRACK2;
+
+        // A hash announced but not sent leaves 20 bytes unaccounted for
+        byte[] frame = frame(TRACKS, status, status | KSN, TDES);
+        frame[9] |= HASHES;
+        frame[frame.length - LRC_FROM_END] ^= HASHES;
+        frame[frame.length - CHECKSUM_FROM_END] += HASHES;
+        assertRejected(frame);
+    }
+
+    @Test
+    public void resetsCardBeforeRejecting() {
+        assertTrue(decoder.decode(validFrame(), card));
+
+        byte[] frame = validFrame();
+        frame[frame.length - LRC_FROM_END] ^= 0x01;
+        assertRejected(frame);
+    }
+
+    private byte[] validFrame() {
+        int status = TRACK1 | TRACK2;
+        return frame(TRACKS, status, status | KSN, TDES);
+    }
+
+    private void assertRejected(byte[] frame) {
+        assertFalse(decoder.decode(frame, card));
+        assertEquals(0, card.panLength);
+        assertFalse(card.encrypted.present);
+    }
+
+    private void assertField(byte[] expected, int field) {
+        EncryptedTracks encrypted = card.encrypted;
+        assertEquals("Length of " + EncryptedTracks.FIELD_NAMES[field], expected.length, encrypted.lengths[field]);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(EncryptedTracks.FIELD_NAMES[field] + " byte " + i,
+                         expected[i], encrypted.frame[encrypted.offsets[field] + i]);
+        }
+    }
+
+    /**
+    * Builds a frame in the enhanced encrypted MSR format, encrypted tracks
+    * filled with 0xe1-0xe3, hashes with 0xa1-0xa3 and the session ID with
+    * 0x5e.
+    *
+    * @param tracks
+    *        Masked tracks 1-3, null if not read
+    * @param maskedStatus
+    *        Tracks sent masked
+    * @param encryptedStatus
+    *        Tracks sent encrypted, hashes, session ID and KSN
+    * @param blockSize
+    *        Cipher block size the encrypted tracks are padded to
+    */
+    private static byte[] frame(String[] tracks, int maskedStatus, int encryptedStatus, int blockSize) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        data.write(CARD_TYPE);
+        data.write(TRACK_STATUS);
+        for (String track : tracks) {
+            data.write(track == null ? 0 : track.length());
+        }
+        data.write(maskedStatus);
+        data.write(encryptedStatus);
+
+        for (int track = 0; track < 3; track++) {
+            if ((maskedStatus & 1 << track) != 0) {
+                byte[] masked = tracks[track].getBytes(StandardCharsets.US_ASCII);
+                data.write(masked, 0, masked.length);
+            }
+        }
+        for (int track = 0; track < 3; track++) {
+            if ((encryptedStatus & 1 << track) != 0) {
+                int length = (tracks[track].length() + blockSize - 1) / blockSize * blockSize;
+                data.write(fill(length, 0xe1 + track), 0, length);
+            }
+        }
+        if ((encryptedStatus & SESSION_ID) != 0) {
+            data.write(fill(8, 0x5e), 0, 8);
+        }
+        for (int track = 0; track < 3; track++) {
+            if ((encryptedStatus & HASHES << track) != 0) {
+                data.write(fill(20, 0xa1 + track), 0, 20);
+            }
+        }
+        if ((encryptedStatus & KSN) != 0) {
+            data.write(ksn(), 0, 10);
+        }
+
+        byte[] body = data.toByteArray();
+        int lrc = 0;
+        int sum = 0;
+        for (byte b : body) {
+            lrc ^= b & 0xff;
+            sum += b & 0xff;
+        }
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        frame.write(0x02);
+        frame.write(body.length);
+        frame.write(body.length >> 8);
+        frame.write(body, 0, body.length);
+        frame.write(lrc);
+        frame.write(sum);
+        frame.write(0x03);
+        return frame.toByteArray();
+    }
+
+    private static byte[] fill(int length, int value) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) value;
+        }
+        return bytes;
+    }
+
+    private static byte[] ksn() {
+        byte[] ksn = new byte[10];
+        for (int i = 0; i < ksn.length; i++) {
+            ksn[i] = (byte) (0xf0 + i);
+        }
+        return ksn;
+    }
+}
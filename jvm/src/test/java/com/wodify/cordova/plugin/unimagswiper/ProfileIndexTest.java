@@ -0,0 +1,140 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ProfileIndexTest {
+
+    private static final String XML =
+            "<IDTECHPRODUCTS>\n" +
+            " <Summary>\n" +
+            "  <PhoneList>\n" +
+            "   <Htc>htc</Htc>\n" +
+            "  </PhoneList>\n" +
+            " </Summary>\n" +
+            " <htc>\n" +
+            "  <full>\n" +
+            "   <support_status val=\"um2g=s;ump=s;um2=s;um2i=s;shuttle=s\"> </support_status>\n" +
+            "   <InputFreq>48000</InputFreq>\n" +
+            "   <OutputFreq>24000</OutputFreq>\n" +
+            "  </full>\n" +
+            "  <partial>\n" +
+            "   <support_status val=\"um2g=m;ump=m;um2=s;um2i=s;shuttle=s\"> </support_status>\n" +
+            "   <InputFreq>32000</InputFreq>\n" +
+            "  </partial>\n" +
+            "  <unlisted>\n" +
+            "   <support_status val=\"um2=s;um2i=s\"> </support_status>\n" +
+            "   <InputFreq>44100</InputFreq>\n" +
+            "  </unlisted>\n" +
+            "  <other>\n" +
+            "   <support_status val=\"um2=s;uni=m\"> </support_status>\n" +
+            "   <InputFreq>44100</InputFreq>\n" +
+            "  </other>\n" +
+            "  <empty>\n" +
+            "   <support_status val=\"\"> </support_status>\n" +
+            "   <InputFreq>44100</InputFreq>\n" +
+            "  </empty>\n" +
+            "  <versioned>\n" +
+            "   <support_status val=\"um2=s\"> </support_status>\n" +
+            "   <InputFreq val=\"4.4\">44100</InputFreq>\n" +
+            "  </versioned>\n" +
+            " </htc>\n" +
+            "</IDTECHPRODUCTS>\n";
+
+    @Rule
+    public final TemporaryFolder files = new TemporaryFolder();
+
+    private final DiagnosticLog log = new DiagnosticLog(16);
+
+    @Test
+    public void findsFullySupportedReaderTypes() throws Exception {
+        ProfileIndex index = compile();
+
+        int[] entry = index.lookup("HTC", "Full", "ump");
+        assertNotNull(entry);
+        assertEquals(48000, entry[ProfileIndex.FREQUENCE_INPUT]);
+        assertEquals(24000, entry[ProfileIndex.FREQUENCE_OUTPUT]);
+        assertNotNull(index.lookup("htc", "full", "shuttle"));
+    }
+
+    @Test
+    public void missesReaderTypesNotFullySupported() throws Exception {
+        ProfileIndex index = compile();
+
+        assertEquals(32000, index.lookup("htc", "partial", "um2")[ProfileIndex.FREQUENCE_INPUT]);
+        assertNull(index.lookup("htc", "partial", "ump"));
+    }
+
+    @Test
+    public void missesReaderTypesNotListed() throws Exception {
+        ProfileIndex index = compile();
+
+        assertNotNull(index.lookup("htc", "unlisted", "um2"));
+        assertNull(index.lookup("htc", "unlisted", "shuttle"));
+        assertNull(index.lookup("htc", "empty", "um2"));
+        assertNull(index.lookup("htc", "full", "UNIJACK"));
+    }
+
+    @Test
+    public void withNoReaderTypeFindsEntriesFullySupportingAllListed() throws Exception {
+        ProfileIndex index = compile();
+
+        assertEquals(48000, index.lookup("htc", "full", null)[ProfileIndex.FREQUENCE_INPUT]);
+        assertNotNull(index.lookup("htc", "unlisted", null));
+        assertNull(index.lookup("htc", "partial", null));
+        assertNull(index.lookup("htc", "other", null));
+        assertNull(index.lookup("htc", "empty", null));
+        assertNotNull(index.lookup("htc", "other", "um2"));
+    }
+
+    @Test
+    public void leavesOutVersionSpecificSettings() throws Exception {
+        assertNull(compile().lookup("htc", "versioned", "um2"));
+    }
+
+    @Test
+    public void keepsSupportWhenWrittenAndRead() throws Exception {
+        File file = new File(files.getRoot(), "index");
+        compile().write(file, log);
+        ProfileIndex index = ProfileIndex.read(file, 1, log);
+
+        assertNotNull(index.lookup("htc", "partial", "um2"));
+        assertNull(index.lookup("htc", "partial", "ump"));
+        assertNull(ProfileIndex.read(file, 2, log));
+    }
+
+    @Test
+    public void logsCorruptIndex() throws Exception {
+        File file = new File(files.getRoot(), "index");
+        compile().write(file, log);
+        RandomAccessFile index = new RandomAccessFile(file, "rw");
+        try {
+            index.setLength(index.length() - 1);
+        } finally {
+            index.close();
+        }
+
+        assertNull(ProfileIndex.read(file, 1, log));
+
+        File exported = new File(files.getRoot(), "log");
+        log.snapshot().write(exported);
+        String text = new String(Files.readAllBytes(exported.toPath()), StandardCharsets.UTF_8);
+        assertTrue(text, text.contains("ERROR java.io.EOFException"));
+    }
+
+    private static ProfileIndex compile() throws Exception {
+        return ProfileIndex.compile(new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)), 1);
+    }
+}
@@ -0,0 +1,153 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+import IDTech.MSR.uniMag.uniMagReaderMsg;
+import IDTech.MSR.uniMag.uniMagReader.ReaderType;
+
+public class ReaderSwitchTest {
+
+    private static final String SCRIPT =
+            "connect 0 to_connect\n" +
+            "connect 0 connected\n";
+
+    private static final byte[] TRACK2 = ";4111111111111111=29121010000000000?".getBytes(StandardCharsets.US_ASCII);
+
+    // Time allowed for an event, in milliseconds
+    private static final long EVENT_TIMEOUT_MS = 5000;
+
+    @Rule
+    public final TemporaryFolder files = new TemporaryFolder();
+
+    private final UnimagSwiper plugin = new UnimagSwiper();
+
+    // Listeners readers were created with, in order
+    private final List<uniMagReaderMsg> listeners = new CopyOnWriteArrayList<uniMagReaderMsg>();
+
+    private final StringBuffer events = new StringBuffer();
+
+    @Before
+    public void connect() throws Exception {
+        final ReaderDriver.Factory simulated =
+                SimulatedDriver.factory(SimulatedDriver.Script.read(new StringReader(SCRIPT)), 1);
+        plugin.setDriverFactory(new ReaderDriver.Factory() {
+            @Override
+            public ReaderDriver create(uniMagReaderMsg listener, ReaderType type) {
+                listeners.add(listener);
+                return simulated.create(listener, type);
+            }
+        });
+        plugin.attach(new TestContext(files.getRoot(), new File("../src/android/idt_unimagcfg.xml")));
+
+        plugin.execute("registerEventChannel", new JSONArray(), new Callback() {
+            @Override
+            void onMessage(String message) {
+                synchronized (events) {
+                    events.append(message);
+                    events.notifyAll();
+                }
+            }
+        });
+        plugin.execute("setPlugDebounce", new JSONArray().put(0), new Callback());
+        plugin.execute("setReaderType", new JSONArray().put("UM_II"), new Callback());
+
+        plugin.simulateHeadsetPlug(true);
+        awaitEvents("\"connected\"", 1);
+    }
+
+    @After
+    public void destroy() {
+        plugin.onDestroy();
+    }
+
+    @Test
+    public void dropsCallbacksOfParkedReader() throws Exception {
+        plugin.execute("setReaderType", new JSONArray().put("UM_PRO"), new Callback());
+        awaitEvents("\"connected\"", 2);
+        assertEquals(2, listeners.size());
+
+        // Handled in order, so the parked reader's card would come first
+        listeners.get(0).onReceiveMsgCardData((byte) 0, TRACK2.clone());
+        listeners.get(0).onReceiveMsgDisconnected();
+        listeners.get(1).onReceiveMsgCardData((byte) 0, TRACK2.clone());
+        awaitEvents("swipe_success", 1);
+
+        plugin.execute("setReaderType", new JSONArray().put("UM_II"), new Callback());
+        awaitEvents("\"connected\"", 3);
+
+        assertEquals(1, count("swipe_success"));
+        assertEquals(0, count("\"disconnected\""));
+    }
+
+    @Test
+    public void usesUnparkedReaderAgain() throws Exception {
+        plugin.execute("setReaderType", new JSONArray().put("UM_PRO"), new Callback());
+        awaitEvents("\"connected\"", 2);
+        plugin.execute("setReaderType", new JSONArray().put("UM_II"), new Callback());
+        awaitEvents("\"connected\"", 3);
+
+        // Switching back reused the first reader
+        assertEquals(2, listeners.size());
+        listeners.get(1).onReceiveMsgCardData((byte) 0, TRACK2.clone());
+        listeners.get(0).onReceiveMsgCardData((byte) 0, TRACK2.clone());
+        awaitEvents("swipe_success", 1);
+
+        plugin.execute("setReaderType", new JSONArray().put("UM_PRO"), new Callback());
+        awaitEvents("\"connected\"", 4);
+        assertEquals(1, count("swipe_success"));
+    }
+
+    private void awaitEvents(String token, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + EVENT_TIMEOUT_MS;
+        synchronized (events) {
+            while (count(token) < count && System.currentTimeMillis() < deadline) {
+                events.wait(100);
+            }
+        }
+        assertTrue("Waited for " + count + " " + token, count(token) >= count);
+    }
+
+    private int count(String token) {
+        String text = events.toString();
+        int count = 0;
+        for (int at = text.indexOf(token); at >= 0; at = text.indexOf(token, at + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+    * Callback standing in for the WebView.
+    */
+    private static class Callback extends CallbackContext {
+        Callback() {
+            super("test", null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            if (result.getMessageType() == PluginResult.MESSAGE_TYPE_STRING) {
+                onMessage(result.getStrMessage());
+            }
+        }
+
+        void onMessage(String message) {}
+    }
+}
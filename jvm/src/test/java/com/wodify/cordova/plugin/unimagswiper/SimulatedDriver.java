@@ -0,0 +1,505 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import IDTech.MSR.XMLManager.StructConfigParameters;
+import IDTech.MSR.uniMag.uniMagReaderMsg;
+import IDTech.MSR.uniMag.uniMagReader.ReaderType;
+
+/**
+* Driver replaying recorded reader callbacks instead of talking to a
+* swiper, so connection, swipe and timeout handling can be exercised
+* without a phone. Only SDK types are used, no Android classes.
+*
+* A Script lists callbacks by phase: "connect" steps are replayed once the
+* driver is both listening and given settings, "swipe" steps on
+* startSwipeCard and "autoconfig" steps on startAutoConfig. Each call
+* replays the phase's steps up to the next step ending it, e.g. card_data
+* or timeout for a swipe, and the following call carries on from there,
+* starting over once all steps were replayed. A swipe still running after
+* the timeout set with setTimeoutOfSwipeCard times out as with the SDK,
+* the timeout being scaled like the delays of the script.
+*
+* Callbacks are made from the driver's own thread, as the SDK does.
+*/
+final class SimulatedDriver implements ReaderDriver {
+
+    // Phases of a script
+    private static final int CONNECT = 0;
+    private static final int SWIPE = 1;
+    private static final int AUTO_CONFIG = 2;
+    private static final int PHASE_COUNT = 3;
+
+    // Callbacks a step can make
+    private static final int TO_CONNECT = 0;
+    private static final int CONNECTED = 1;
+    private static final int DISCONNECTED = 2;
+    private static final int TO_SWIPE = 3;
+    private static final int PROCESSING = 4;
+    private static final int CARD_DATA = 5;
+    private static final int TIMEOUT = 6;
+    private static final int FAILURE = 7;
+    private static final int AUTO_CONFIG_PROGRESS = 8;
+    private static final int AUTO_CONFIG_COMPLETED = 9;
+
+    // Names of the phases and callbacks in scripts
+    private static final String[] PHASE_NAMES = { "connect", "swipe", "autoconfig" };
+    private static final String[] CALLBACK_NAMES = {
+        "to_connect",
+        "connected",
+        "disconnected",
+        "to_swipe",
+        "processing",
+        "card_data",
+        "timeout",
+        "failure",
+        "autoconfig_progress",
+        "autoconfig_completed"
+    };
+
+    private final uniMagReaderMsg listener;
+    private final Script script;
+
+    // Multiplies every delay and the swipe timeout, e.g. 0 to replay as
+    // fast as possible
+    private final double timeScale;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    private boolean listening = false;
+    private boolean configured = false;
+    private boolean connected = false;
+    private boolean swipeRunning = false;
+    private int swipeTimeoutSeconds = 20;
+
+    // Step of each phase the next replay starts from
+    private final int[] cursors = new int[PHASE_COUNT];
+
+    // Incremented to cancel the replay in progress
+    private int generation = 0;
+
+    // Phase being replayed and the step it started from, -1 if none
+    private int replayPhase = -1;
+    private int replayStart;
+
+    /**
+    * @param listener
+    *        Receives the replayed callbacks
+    * @param script
+    *        Callbacks to replay
+    * @param timeScale
+    *        Multiplies every delay of the script and the swipe timeout
+    */
+    SimulatedDriver(uniMagReaderMsg listener, Script script, double timeScale) {
+        this.listener = listener;
+        this.script = script;
+        this.timeScale = timeScale;
+    }
+
+    /**
+    * @param script
+    *        Callbacks every driver replays
+    * @param timeScale
+    *        Multiplies every delay of the script
+    * @return
+    *        Factory of simulated drivers, whatever the reader type
+    */
+    static Factory factory(final Script script, final double timeScale) {
+        return new Factory() {
+            @Override
+            public ReaderDriver create(uniMagReaderMsg listener, ReaderType type) {
+                return new SimulatedDriver(listener, script, timeScale);
+            }
+        };
+    }
+
+    @Override
+    public synchronized void registerListen() {
+        listening = true;
+        if (configured) {
+            replay(CONNECT);
+        }
+    }
+
+    @Override
+    public synchronized void unregisterListen() {
+        listening = false;
+        connected = false;
+        swipeRunning = false;
+        cancel();
+    }
+
+    @Override
+    public void release() {
+        unregisterListen();
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void setVerboseLoggingEnable(boolean enable) {}
+
+    @Override
+    public synchronized boolean setTimeoutOfSwipeCard(int seconds) {
+        swipeTimeoutSeconds = seconds;
+        return true;
+    }
+
+    @Override
+    public boolean connectWithProfile(StructConfigParameters profile) {
+        return configure();
+    }
+
+    @Override
+    public void setXMLFileNameWithPath(String path) {}
+
+    @Override
+    public boolean loadingConfigurationXMLFile(boolean update) {
+        return configure();
+    }
+
+    @Override
+    public synchronized boolean startAutoConfig(String xmlPath, boolean useDefault) {
+        if (!listening) {
+            return false;
+        }
+        replay(AUTO_CONFIG);
+        return true;
+    }
+
+    @Override
+    public synchronized void stopAutoConfig() {
+        cancel();
+    }
+
+    @Override
+    public synchronized boolean startSwipeCard() {
+        if (!connected || swipeRunning) {
+            return false;
+        }
+
+        swipeRunning = true;
+        final int swipeGeneration = replay(SWIPE);
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (SimulatedDriver.this) {
+                    if (swipeGeneration != generation) {
+                        return;
+                    }
+                    cancel();
+                    swipeRunning = false;
+                }
+                listener.onReceiveMsgTimeout("Swipe card timed out.");
+            }
+        }, (long) (swipeTimeoutSeconds * 1000L * timeScale), TimeUnit.MILLISECONDS);
+
+        return true;
+    }
+
+    @Override
+    public synchronized void stopSwipeCard() {
+        if (swipeRunning) {
+            swipeRunning = false;
+            cancel();
+        }
+    }
+
+    @Override
+    public synchronized boolean isSwipeCardRunning() {
+        return swipeRunning;
+    }
+
+    private synchronized boolean configure() {
+        configured = true;
+        if (listening) {
+            replay(CONNECT);
+        }
+        return true;
+    }
+
+    /**
+    * Cancels the replay in progress and starts replaying the next steps
+    * of a phase.
+    *
+    * @return
+    *        Generation of the new replay
+    */
+    private int replay(int phase) {
+        cancel();
+        if (!script.isEmpty(phase)) {
+            replayPhase = phase;
+            replayStart = cursors[phase];
+            schedule(new Replay(phase, generation));
+        }
+        return generation;
+    }
+
+    /**
+    * Cancels the replay in progress. A replay cut short skips the rest of
+    * its steps, so the next one starts with a whole sequence.
+    */
+    private void cancel() {
+        generation++;
+
+        if (replayPhase >= 0 && cursors[replayPhase] != replayStart) {
+            while (!script.get(replayPhase, cursors[replayPhase]).isLast()
+                    && cursors[replayPhase] != replayStart) {
+                cursors[replayPhase] = (cursors[replayPhase] + 1) % script.size(replayPhase);
+            }
+            cursors[replayPhase] = (cursors[replayPhase] + 1) % script.size(replayPhase);
+        }
+        replayPhase = -1;
+    }
+
+    private void schedule(Replay replay) {
+        Step step = script.get(replay.phase, cursors[replay.phase]);
+        scheduler.schedule(replay, (long) (step.delayMillis * timeScale), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+    * Makes the next step of a phase's replay, then schedules the one
+    * after unless the step ended the replay.
+    */
+    private final class Replay implements Runnable {
+        final int phase;
+        final int replayGeneration;
+
+        Replay(int phase, int replayGeneration) {
+            this.phase = phase;
+            this.replayGeneration = replayGeneration;
+        }
+
+        @Override
+        public void run() {
+            Step step;
+            boolean last;
+
+            synchronized (SimulatedDriver.this) {
+                if (replayGeneration != generation) {
+                    return;
+                }
+
+                step = script.get(phase, cursors[phase]);
+                cursors[phase] = (cursors[phase] + 1) % script.size(phase);
+
+                if (step.callback == CONNECTED) {
+                    connected = true;
+                } else if (step.callback == DISCONNECTED) {
+                    connected = false;
+                }
+
+                last = step.isLast();
+                if (last) {
+                    swipeRunning = false;
+                    replayPhase = -1;
+                    generation++;
+                } else schedule(this);
+            }
+
+            // Outside the lock, the listener may call back into the driver
+            call(step);
+        }
+    }
+
+    private void call(Step step) {
+        switch (step.callback) {
+            case TO_CONNECT:
+                listener.onReceiveMsgToConnect();
+                break;
+            case CONNECTED:
+                listener.onReceiveMsgConnected();
+                break;
+            case DISCONNECTED:
+                listener.onReceiveMsgDisconnected();
+                break;
+            case TO_SWIPE:
+                listener.onReceiveMsgToSwipeCard();
+                break;
+            case PROCESSING:
+                listener.onReceiveMsgProcessingCardData();
+                break;
+            case CARD_DATA:
+                // A copy, as the plugin wipes the data once parsed
+                listener.onReceiveMsgCardData(step.flag, step.data.clone());
+                break;
+            case TIMEOUT:
+                listener.onReceiveMsgTimeout(step.message);
+                break;
+            case FAILURE:
+                listener.onReceiveMsgFailureInfo(step.index, step.message);
+                break;
+            case AUTO_CONFIG_PROGRESS:
+                listener.onReceiveMsgAutoConfigProgress(step.index);
+                break;
+            default:
+                listener.onReceiveMsgAutoConfigCompleted(new StructConfigParameters());
+                break;
+        }
+    }
+
+
+    /***************************************************
+    * SCRIPTS
+    ***************************************************/
+
+
+    /**
+    * One recorded callback.
+    */
+    private static final class Step {
+        long delayMillis;
+        int callback;
+
+        // Arguments, depending on the callback
+        byte flag;
+        byte[] data;
+        int index;
+        String message;
+
+        /**
+        * Whether the step ends the replay of its phase.
+        */
+        boolean isLast() {
+            return callback == CONNECTED || callback == DISCONNECTED || callback == CARD_DATA
+                    || callback == TIMEOUT || callback == FAILURE || callback == AUTO_CONFIG_COMPLETED;
+        }
+    }
+
+    /**
+    * Recorded callbacks, read from text with one step per line:
+    *
+    *   phase delay callback [arguments]
+    *
+    * where phase is connect, swipe or autoconfig and delay is the time in
+    * milliseconds since the previous step. Arguments are the flag and
+    * data bytes in hex for card_data, a progress percentage for
+    * autoconfig_progress, an index and message for failure and a message
+    * for timeout. Blank lines and lines starting with '#' are ignored.
+    *
+    *   connect 300 to_connect
+    *   connect 1200 connected
+    *   swipe 0 to_swipe
+    *   swipe 2500 processing
+    *   swipe 150 card_data 00 253B...3F
+    */
+    static final class Script {
+        private final List<List<Step>> phases = new ArrayList<List<Step>>();
+
+        private Script() {
+            for (int i = 0; i < PHASE_COUNT; i++) {
+                phases.add(new ArrayList<Step>());
+            }
+        }
+
+        /**
+        * @param in
+        *        Script text, not closed
+        * @return
+        *        The parsed script
+        * @throws IOException
+        *        If a line is not a valid step
+        */
+        static Script read(Reader in) throws IOException {
+            Script script = new Script();
+            BufferedReader lines = new BufferedReader(in);
+            String line;
+            int number = 0;
+
+            while ((line = lines.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.length() == 0 || line.charAt(0) == '#') {
+                    continue;
+                }
+
+                try {
+                    script.add(line);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Invalid step on line " + number + ": " + e.getMessage());
+                }
+            }
+
+            return script;
+        }
+
+        private void add(String line) {
+            String[] parts = line.split("\\s+", 4);
+            if (parts.length < 3) {
+                throw new IllegalArgumentException("expected phase, delay and callback");
+            }
+
+            int phase = indexOf(PHASE_NAMES, parts[0]);
+            Step step = new Step();
+            step.delayMillis = Long.parseLong(parts[1]);
+            step.callback = indexOf(CALLBACK_NAMES, parts[2]);
+            String arguments = parts.length > 3 ? parts[3] : "";
+
+            switch (step.callback) {
+                case CARD_DATA:
+                    String[] bytes = arguments.split("\\s+");
+                    if (bytes.length != 2) {
+                        throw new IllegalArgumentException("expected flag and data");
+                    }
+                    step.flag = (byte) Integer.parseInt(bytes[0], 16);
+                    step.data = parseHex(bytes[1]);
+                    break;
+                case FAILURE:
+                    String[] failure = arguments.split("\\s+", 2);
+                    step.index = Integer.parseInt(failure[0]);
+                    step.message = failure.length > 1 ? failure[1] : "";
+                    break;
+                case AUTO_CONFIG_PROGRESS:
+                    step.index = Integer.parseInt(arguments);
+                    break;
+                case TIMEOUT:
+                    step.message = arguments;
+                    break;
+                default:
+                    break;
+            }
+
+            phases.get(phase).add(step);
+        }
+
+        boolean isEmpty(int phase) {
+            return phases.get(phase).isEmpty();
+        }
+
+        private int size(int phase) {
+            return phases.get(phase).size();
+        }
+
+        private Step get(int phase, int index) {
+            return phases.get(phase).get(index);
+        }
+
+        private static int indexOf(String[] names, String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("unknown name '" + name + "'");
+        }
+
+        private static byte[] parseHex(String hex) {
+            if (hex.length() % 2 != 0) {
+                throw new IllegalArgumentException("odd number of hex digits");
+            }
+
+            byte[] bytes = new byte[hex.length() / 2];
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+            }
+            return bytes;
+        }
+    }
+}
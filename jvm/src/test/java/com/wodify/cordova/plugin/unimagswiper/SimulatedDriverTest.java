@@ -0,0 +1,259 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import IDTech.MSR.XMLManager.StructConfigParameters;
+import IDTech.MSR.uniMag.uniMagReaderMsg;
+
+public class SimulatedDriverTest {
+
+    private static final String CONNECT =
+            "connect 0 to_connect\n" +
+            "connect 10 connected\n";
+
+    // Track 2 of a Visa card, in hex
+    private static final String TRACK2 = "3B343131313131313131313131313131313D32393132313031303030303030303030303F";
+
+    private final Listener listener = new Listener();
+    private SimulatedDriver driver;
+
+    @After
+    public void release() {
+        if (driver != null) {
+            driver.release();
+        }
+    }
+
+    @Test
+    public void connectsOnceListeningAndConfigured() throws Exception {
+        start(CONNECT, 1);
+
+        driver.registerListen();
+        assertNull(listener.next(100));
+
+        driver.loadingConfigurationXMLFile(false);
+        assertEquals("to_connect", listener.next());
+        assertEquals("connected", listener.next());
+        assertNull(listener.next(100));
+    }
+
+    @Test
+    public void replaysSwipeUpToCardData() throws Exception {
+        start(CONNECT +
+                "swipe 0 to_swipe\n" +
+                "swipe 10 processing\n" +
+                "swipe 10 card_data 00 " + TRACK2 + "\n", 1);
+        connect();
+
+        assertTrue(driver.startSwipeCard());
+        assertTrue(driver.isSwipeCardRunning());
+        assertFalse(driver.startSwipeCard());
+
+        assertEquals("to_swipe", listener.next());
+        assertEquals("processing", listener.next());
+        assertEquals("card_data " + TRACK2, listener.next());
+        assertFalse(driver.isSwipeCardRunning());
+
+        // The next swipe starts over
+        assertTrue(driver.startSwipeCard());
+        assertEquals("to_swipe", listener.next());
+    }
+
+    @Test
+    public void replaysScriptedTimeout() throws Exception {
+        start(CONNECT +
+                "swipe 0 to_swipe\n" +
+                "swipe 10 timeout Swipe timed out.\n", 1);
+        connect();
+
+        assertTrue(driver.startSwipeCard());
+        assertEquals("to_swipe", listener.next());
+        assertEquals("timeout Swipe timed out.", listener.next());
+        assertFalse(driver.isSwipeCardRunning());
+    }
+
+    @Test
+    public void timesOutSwipeAfterScaledTimeout() throws Exception {
+        // An hour long swipe, 3.6 seconds once scaled, against a 20
+        // millisecond timeout once scaled
+        start(CONNECT +
+                "swipe 0 to_swipe\n" +
+                "swipe 3600000 processing\n" +
+                "swipe 0 card_data 00 " + TRACK2 + "\n", 0.001);
+        driver.setTimeoutOfSwipeCard(20);
+        connect();
+
+        assertTrue(driver.startSwipeCard());
+        assertEquals("to_swipe", listener.next());
+        assertEquals("timeout Swipe card timed out.", listener.next(1000));
+        assertFalse(driver.isSwipeCardRunning());
+    }
+
+    @Test
+    public void stoppedSwipeSkipsItsRemainingSteps() throws Exception {
+        start(CONNECT +
+                "swipe 0 to_swipe\n" +
+                "swipe 200 card_data 00 " + TRACK2 + "\n" +
+                "swipe 0 to_swipe\n" +
+                "swipe 10 timeout second\n", 1);
+        connect();
+
+        assertTrue(driver.startSwipeCard());
+        assertEquals("to_swipe", listener.next());
+        driver.stopSwipeCard();
+        assertNull(listener.next(300));
+
+        assertTrue(driver.startSwipeCard());
+        assertEquals("to_swipe", listener.next());
+        assertEquals("timeout second", listener.next());
+    }
+
+    @Test
+    public void replaysDisconnectOnNextConnect() throws Exception {
+        start(CONNECT +
+                "connect 10 disconnected\n" +
+                "swipe 0 to_swipe\n", 1);
+        connect();
+
+        driver.unregisterListen();
+        driver.registerListen();
+        assertEquals("disconnected", listener.next());
+        assertFalse(driver.startSwipeCard());
+
+        // Starts over with the reader connecting again
+        driver.loadingConfigurationXMLFile(false);
+        assertEquals("to_connect", listener.next());
+        assertEquals("connected", listener.next());
+    }
+
+    @Test
+    public void doesNotSwipeUnlessConnected() throws Exception {
+        start(CONNECT + "swipe 0 to_swipe\n", 1);
+
+        assertFalse(driver.startSwipeCard());
+        assertNull(listener.next(100));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownCallback() throws Exception {
+        SimulatedDriver.Script.read(new StringReader("connect 0 to_connec\n"));
+    }
+
+    private void start(String script, double timeScale) throws IOException {
+        driver = new SimulatedDriver(listener, SimulatedDriver.Script.read(new StringReader(script)), timeScale);
+    }
+
+    private void connect() throws InterruptedException {
+        driver.registerListen();
+        driver.loadingConfigurationXMLFile(false);
+        assertEquals("to_connect", listener.next());
+        assertEquals("connected", listener.next());
+    }
+
+    /**
+    * Records the callbacks made, by name and arguments.
+    */
+    private static final class Listener implements uniMagReaderMsg {
+        private final BlockingQueue<String> calls = new LinkedBlockingQueue<String>();
+
+        String next() throws InterruptedException {
+            return next(2000);
+        }
+
+        String next(long timeoutMillis) throws InterruptedException {
+            return calls.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void onReceiveMsgToConnect() {
+            calls.add("to_connect");
+        }
+
+        @Override
+        public void onReceiveMsgConnected() {
+            calls.add("connected");
+        }
+
+        @Override
+        public void onReceiveMsgDisconnected() {
+            calls.add("disconnected");
+        }
+
+        @Override
+        public void onReceiveMsgTimeout(String message) {
+            calls.add("timeout " + message);
+        }
+
+        @Override
+        public void onReceiveMsgToSwipeCard() {
+            calls.add("to_swipe");
+        }
+
+        @Override
+        public void onReceiveMsgCommandResult(int command, byte[] result) {
+            calls.add("command_result");
+        }
+
+        @Override
+        public void onReceiveMsgCardData(byte flag, byte[] data) {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : data) {
+                hex.append(String.format("%02X", b));
+            }
+            calls.add("card_data " + hex);
+        }
+
+        @Override
+        public void onReceiveMsgProcessingCardData() {
+            calls.add("processing");
+        }
+
+        @Override
+        public void onReceiveMsgToCalibrateReader() {
+            calls.add("calibrate");
+        }
+
+        @Override
+        @Deprecated
+        public void onReceiveMsgSDCardDFailed(String message) {
+            calls.add("sd_card_failed");
+        }
+
+        @Override
+        public void onReceiveMsgFailureInfo(int index, String message) {
+            calls.add("failure " + index + " " + message);
+        }
+
+        @Override
+        public void onReceiveMsgAutoConfigProgress(int percent) {
+            calls.add("autoconfig_progress " + percent);
+        }
+
+        @Override
+        public void onReceiveMsgAutoConfigProgress(int percent, double score, String profileName) {
+            calls.add("autoconfig_progress " + percent);
+        }
+
+        @Override
+        public void onReceiveMsgAutoConfigCompleted(StructConfigParameters profile) {
+            calls.add("autoconfig_completed");
+        }
+
+        @Override
+        public boolean getUserGrant(int type, String message) {
+            return true;
+        }
+    }
+}
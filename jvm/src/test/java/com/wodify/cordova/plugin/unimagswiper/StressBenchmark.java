@@ -0,0 +1,345 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+
+import org.apache.cordova.CallbackContext;
+import org.apache.cordova.PluginResult;
+
+/**
+* Stress benchmark of the whole swipe path of the plugin: card data handed
+* to simulateCardData is parsed, encoded and delivered through the
+* event channel to a fake WebView callback, while the reader is unplugged
+* and plugged again and its type switched every so often. The reader is a
+* SimulatedDriver, so only the plugin's own work is measured.
+*
+* Every swipe carries its sequence number in its PAN, so the report can
+* tell swipes lost or delivered twice, along with throughput, latency
+* percentiles from simulateCardData to delivery and bytes allocated
+* per swipe by the plugin's threads (on JVMs reporting per-thread
+* allocation, such as HotSpot). If the plugin stops delivering for
+* longer than DRAIN_TIMEOUT_MS, the run ends there and the report has
+* timed_out set, naming the stage that stalled in stalled_at.
+*
+* The plugin runs on the stand-ins for the Android and Cordova classes in
+* src/test/platform, in a TestContext. StressBenchmarkTest runs it as part
+* of the build, or with more swipes:
+*
+*   mvn test -Dtest=StressBenchmarkTest -Dstress.swipes=100000
+*/
+final class StressBenchmark {
+
+    // Reader connecting right away, then waiting for the swipes the
+    // benchmark injects
+    private static final String SCRIPT =
+            "connect 0 to_connect\n" +
+            "connect 5 connected\n" +
+            "swipe 0 to_swipe\n" +
+            "swipe 3600000 timeout\n";
+
+    // Reader types switched between
+    private static final String[] READER_TYPES = { "UM_PRO", "UM_II" };
+
+    // Swipes injected ahead of deliveries at most
+    private static final int MAX_IN_FLIGHT = 64;
+
+    // Time allowed for deliveries to catch up, in milliseconds
+    private static final long DRAIN_TIMEOUT_MS = 30000;
+
+    // Card number marker within delivered batches, escaped as the data
+    // is a JSON string
+    private static final String CARD_NUMBER = "card_number\\\":\\\"";
+
+    private final UnimagSwiper plugin = new UnimagSwiper();
+
+    // When each swipe was injected, and how many times it was delivered
+    private final long[] sentAt;
+    private final int[] deliveries;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    // Stage the run stalled at, null if none did
+    private String stalledAt = null;
+
+    // Counts of delivered events, guarded by this
+    private int delivered = 0;
+    private int connectedEvents = 0;
+    private int swipeErrors = 0;
+    private int unknownCards = 0;
+
+    private StressBenchmark(int swipes) {
+        sentAt = new long[swipes];
+        deliveries = new int[swipes];
+    }
+
+    /**
+    * Runs the benchmark.
+    *
+    * @param context
+    *        Application context the plugin runs in
+    * @param swipes
+    *        Number of swipes to inject
+    * @param churnInterval
+    *        Swipes between two lifecycle events, alternately a reader
+    *        unplugged and plugged again and a reader type switch
+    * @return
+    *        Report of the run
+    */
+    static JSONObject run(Context context, int swipes, int churnInterval)
+            throws IOException, JSONException, InterruptedException {
+        return new StressBenchmark(swipes).run(context, churnInterval);
+    }
+
+    private JSONObject run(Context context, int churnInterval)
+            throws IOException, JSONException, InterruptedException {
+        plugin.setDriverFactory(SimulatedDriver.factory(SimulatedDriver.Script.read(new StringReader(SCRIPT)), 1));
+        plugin.attach(context);
+
+        plugin.execute("registerEventChannel", new JSONArray(), new Callback() {
+            @Override
+            void onMessage(String messages) {
+                onBatch(messages);
+            }
+        });
+        plugin.execute("setPlugDebounce", new JSONArray().put(0), new Callback());
+
+        plugin.simulateHeadsetPlug(true);
+        if (!awaitConnected(1)) {
+            stalledAt = "connect";
+        }
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long start = System.nanoTime();
+
+        int plugCycles = 0;
+        int typeSwitches = 0;
+
+        int sent = 0;
+        for (int i = 0; i < sentAt.length && stalledAt == null; i++) {
+            if (!awaitDelivered(i - MAX_IN_FLIGHT)) {
+                stalledAt = "swipe " + (i - MAX_IN_FLIGHT);
+                break;
+            }
+
+            if (i > 0 && i % churnInterval == 0) {
+                if ((i / churnInterval) % 2 == 1) {
+                    plugin.simulateHeadsetPlug(false);
+                    plugin.simulateHeadsetPlug(true);
+                    plugCycles++;
+                } else {
+                    String type = READER_TYPES[typeSwitches++ % READER_TYPES.length];
+                    plugin.execute("setReaderType", new JSONArray().put(type), new Callback());
+                }
+            }
+
+            byte[] data = swipe(i);
+            sentAt[i] = System.nanoTime();
+            plugin.simulateCardData((byte) 0, data);
+            sent++;
+        }
+
+        if (stalledAt == null && !awaitDelivered(sent)) {
+            stalledAt = "drain";
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = allocatedBefore >= 0 ? allocatedBytes(threads) - allocatedBefore : -1;
+
+        // Metrics are reported from the reader thread
+        final JSONObject[] metrics = new JSONObject[1];
+        final CountDownLatch reported = new CountDownLatch(1);
+        plugin.execute("getMetrics", new JSONArray(), new Callback() {
+            @Override
+            void onMessage(String message) {
+                try {
+                    metrics[0] = new JSONObject(message);
+                } catch (JSONException e) {
+                    e.printStackTrace();
+                }
+                reported.countDown();
+            }
+        });
+        if (!reported.await(DRAIN_TIMEOUT_MS, TimeUnit.MILLISECONDS) && stalledAt == null) {
+            stalledAt = "getMetrics";
+        }
+
+        plugin.onDestroy();
+
+        return report(sent, elapsed, allocated, plugCycles, typeSwitches, metrics[0]);
+    }
+
+    private synchronized JSONObject report(int sent, long elapsed, long allocated, int plugCycles,
+                                           int typeSwitches, JSONObject metrics) throws JSONException {
+        int lost = 0;
+        int duplicated = 0;
+        for (int i = 0; i < sent; i++) {
+            if (deliveries[i] == 0) {
+                lost++;
+            } else duplicated += deliveries[i] - 1;
+        }
+
+        JSONObject latencies = new JSONObject();
+        latencies.put("p50", latency.getPercentileMillis(50));
+        latencies.put("p90", latency.getPercentileMillis(90));
+        latencies.put("p99", latency.getPercentileMillis(99));
+        latencies.put("max", latency.getMaxMillis());
+
+        JSONObject report = new JSONObject();
+        report.put("swipes", sent);
+        report.put("timed_out", stalledAt != null);
+        report.put("stalled_at", stalledAt);
+        report.put("delivered", delivered);
+        report.put("lost", lost);
+        report.put("duplicated", duplicated);
+        report.put("unknown", unknownCards);
+        report.put("swipe_errors", swipeErrors);
+        report.put("plug_cycles", plugCycles);
+        report.put("reader_type_switches", typeSwitches);
+        report.put("elapsed_ms", elapsed / 1e6);
+        report.put("swipes_per_second", sent / (elapsed / 1e9));
+        report.put("latency_ms", latencies);
+        report.put("allocated_bytes_per_swipe", allocated >= 0 && sent > 0 ? allocated / sent : -1);
+        report.put("metrics", metrics);
+        return report;
+    }
+
+    /**
+    * Counts the events of a delivered batch.
+    */
+    private synchronized void onBatch(String messages) {
+        long now = System.nanoTime();
+
+        connectedEvents += count(messages, "\"event\":\"connected\"");
+        swipeErrors += count(messages, "\"event\":\"swipe_error\"");
+
+        int at = 0;
+        while ((at = messages.indexOf(CARD_NUMBER, at)) >= 0) {
+            at += CARD_NUMBER.length();
+
+            // Sequence number between the leading 4 and the check digit
+            int sequence = Integer.parseInt(messages.substring(at + 1, at + 15));
+            if (sequence < sentAt.length) {
+                deliveries[sequence]++;
+                latency.record(now - sentAt[sequence]);
+                delivered++;
+            } else unknownCards++;
+        }
+
+        notifyAll();
+    }
+
+    /**
+    * @return
+    *        False if the reader did not connect in time
+    */
+    private synchronized boolean awaitConnected(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (connectedEvents < count && System.currentTimeMillis() < deadline) {
+            wait(100);
+        }
+        return connectedEvents >= count;
+    }
+
+    /**
+    * @return
+    *        False if the swipes were not delivered in time
+    */
+    private synchronized boolean awaitDelivered(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (delivered + swipeErrors < count && System.currentTimeMillis() < deadline) {
+            wait(100);
+        }
+        return delivered + swipeErrors >= count;
+    }
+
+    /**
+    * Builds the raw data of a swipe, tracks 1 and 2 of a Visa card whose
+    * PAN holds the sequence number.
+    */
+    private static byte[] swipe(int sequence) {
+        StringBuilder pan = new StringBuilder("4");
+        String digits = String.valueOf(sequence);
+        for (int i = digits.length(); i < 14; i++) {
+            pan.append('0');
+        }
+        pan.append(digits).append('0');
+
+        // Replace the trailing 0 with the Luhn check digit
+        char[] chars = pan.toString().toCharArray();
+        for (char check = '0'; check <= '9'; check++) {
+            chars[chars.length - 1] = check;
+            if (CardParser.isLuhnValid(chars, chars.length)) {
+                break;
+            }
+        }
+        String number = new String(chars);
+
+        String tracks = "%B" + number + "^BENCH/MARK^2912101000000000?;" + number + "=29121010000000000?";
+        try {
+            return tracks.getBytes("US-ASCII");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int count(String text, String token) {
+        int count = 0;
+        for (int at = text.indexOf(token); at >= 0; at = text.indexOf(token, at + token.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+    * @return
+    *        Bytes allocated so far by threads other than the calling one,
+    *        -1 if the JVM does not tell
+    */
+    private static long allocatedBytes(ThreadMXBean threads) {
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        long current = Thread.currentThread().getId();
+        long total = 0;
+
+        for (long id : threads.getAllThreadIds()) {
+            if (id != current) {
+                total += Math.max(0, hotspot.getThreadAllocatedBytes(id));
+            }
+        }
+        return total;
+    }
+
+    /**
+    * Callback standing in for the WebView, passing on what the plugin
+    * sends.
+    */
+    private static class Callback extends CallbackContext {
+        Callback() {
+            super("benchmark", null);
+        }
+
+        @Override
+        public void sendPluginResult(PluginResult result) {
+            if (result.getMessageType() == PluginResult.MESSAGE_TYPE_STRING) {
+                onMessage(result.getStrMessage());
+            } else if (result.getMessageType() != PluginResult.MESSAGE_TYPE_NULL) {
+                onMessage(result.getMessage());
+            }
+        }
+
+        void onMessage(String message) {}
+    }
+}
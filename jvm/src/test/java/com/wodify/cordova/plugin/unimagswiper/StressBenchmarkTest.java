@@ -0,0 +1,56 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+* Runs StressBenchmark, 2000 swipes with a lifecycle event every 200 by
+* default; -Dstress.swipes and -Dstress.churn change them. The report is
+* written to target/stress-report.json.
+*/
+public class StressBenchmarkTest {
+
+    private static final File XML_CONFIG = new File("../src/android/idt_unimagcfg.xml");
+    private static final File REPORT = new File("target/stress-report.json");
+
+    @Rule
+    public final TemporaryFolder files = new TemporaryFolder();
+
+    @Test
+    public void deliversEverySwipeOnce() throws Exception {
+        int swipes = Integer.getInteger("stress.swipes", 2000);
+        int churn = Integer.getInteger("stress.churn", 200);
+
+        JSONObject report = StressBenchmark.run(new TestContext(files.getRoot(), XML_CONFIG), swipes, churn);
+        writeReport(report);
+
+        assertFalse("Stalled at " + report.optString("stalled_at"), report.getBoolean("timed_out"));
+        assertEquals(swipes, report.getInt("swipes"));
+        assertEquals(swipes, report.getInt("delivered"));
+        assertEquals(0, report.getInt("lost"));
+        assertEquals(0, report.getInt("duplicated"));
+        assertEquals(0, report.getInt("unknown"));
+        assertEquals(0, report.getInt("swipe_errors"));
+    }
+
+    private static void writeReport(JSONObject report) throws Exception {
+        REPORT.getParentFile().mkdirs();
+        Writer out = new OutputStreamWriter(new FileOutputStream(REPORT), StandardCharsets.UTF_8);
+        try {
+            out.write(report.toString(2));
+        } finally {
+            out.close();
+        }
+    }
+}
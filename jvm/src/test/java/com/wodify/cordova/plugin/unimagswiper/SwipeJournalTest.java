@@ -0,0 +1,199 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SwipeJournalTest {
+
+    private static final String TRACKS = "%B4111111111111111^CARDHOLDER/TEST A^2912101000000000000?"
+            + ";4111111111111111=29121010000000000?";
+
+    // Stands in for the Keystore key
+    private static final SecretKey KEY = new SecretKeySpec(new byte[32], "AES");
+
+    @Rule
+    public final TemporaryFolder files = new TemporaryFolder();
+
+    private final CardData card = new CardData();
+    private final CardEncoder encoder = new CardEncoder();
+
+    private File dir;
+    private SwipeJournal journal;
+
+    @Before
+    public void open() throws Exception {
+        assertTrue(new CardParser().parse(TRACKS.getBytes(StandardCharsets.US_ASCII), card));
+        dir = new File(files.getRoot(), "journal");
+        journal = SwipeJournal.open(dir, KEY);
+    }
+
+    @After
+    public void close() {
+        journal.close();
+    }
+
+    @Test
+    public void replaysEntriesInOrder() throws Exception {
+        append(3);
+
+        List<Long> seqs = replay(0);
+        assertEquals(3, seqs.size());
+        assertEquals(1L, (long) seqs.get(0));
+        assertEquals(3L, (long) seqs.get(2));
+    }
+
+    @Test
+    public void reopensAfterTruncatedLastRecord() throws Exception {
+        append(3);
+        journal.close();
+
+        // The app died while the third entry was being written
+        File segment = dir.listFiles()[0];
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        try {
+            file.setLength(file.length() - 5);
+        } finally {
+            file.close();
+        }
+
+        reopen();
+        assertEquals(2, journal.getPendingCount());
+        assertEquals(3, journal.getNextSeq());
+
+        // Appends carry on after the last whole record
+        append(1);
+        reopen();
+        List<Long> seqs = replay(0);
+        assertEquals(3, seqs.size());
+        assertEquals(3L, (long) seqs.get(2));
+    }
+
+    @Test
+    public void rollsPastSegmentBytes() throws Exception {
+        long firstInSecond = appendUntilRoll();
+        append(2);
+
+        File[] segments = dir.listFiles();
+        assertEquals(2, segments.length);
+        for (File segment : segments) {
+            assertTrue(segment.length() <= SwipeJournal.SEGMENT_BYTES);
+        }
+
+        reopen();
+        assertEquals(2, journal.getSegmentCount());
+        assertEquals(firstInSecond + 2, journal.getPendingCount());
+        assertEquals(firstInSecond + 3, journal.getNextSeq());
+
+        List<Long> seqs = replay(0);
+        for (int i = 0; i < seqs.size(); i++) {
+            assertEquals(i + 1, (long) seqs.get(i));
+        }
+    }
+
+    @Test
+    public void ackSurvivesDeletionOfOlderSegments() throws Exception {
+        long firstInSecond = appendUntilRoll();
+        append(2);
+
+        // Every entry of the first segment consumed
+        journal.ack(firstInSecond - 1);
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(1, dir.listFiles().length);
+
+        reopen();
+        assertEquals(3, journal.getPendingCount());
+        assertEquals(firstInSecond + 3, journal.getNextSeq());
+        assertEquals(firstInSecond, (long) replay(0).get(0));
+
+        // An ack written after the roll is found again too
+        journal.ack(firstInSecond);
+        reopen();
+        assertEquals(2, journal.getPendingCount());
+        assertEquals(firstInSecond + 1, (long) replay(0).get(0));
+    }
+
+    @Test
+    public void replaySkipsAckedAndLaterEntries() throws Exception {
+        append(5);
+        journal.ack(2);
+
+        List<Long> seqs = replay(5);
+        assertEquals(2, seqs.size());
+        assertEquals(3L, (long) seqs.get(0));
+        assertEquals(4L, (long) seqs.get(1));
+        assertEquals(3, replay(0).size());
+    }
+
+    @Test
+    public void skipsEntriesSealedWithAnotherKey() throws Exception {
+        append(2);
+        journal.close();
+
+        journal = SwipeJournal.open(dir, new SecretKeySpec(new byte[16], "AES"));
+        assertEquals(0, replay(0).size());
+        assertEquals(2, journal.getUnreadableCount());
+    }
+
+    private void append(int count) throws Exception {
+        for (int i = 0; i < count; i++) {
+            card.journalSeq = journal.getNextSeq();
+            journal.append(encoder.set(card));
+        }
+    }
+
+    /**
+    * Appends until the journal starts its second segment.
+    *
+    * @return
+    *        Sequence number of the first entry in the second segment
+    */
+    private long appendUntilRoll() throws Exception {
+        while (journal.getSegmentCount() < 2) {
+            append(1);
+        }
+        return journal.getNextSeq() - 1;
+    }
+
+    private void reopen() throws Exception {
+        journal.close();
+        journal = SwipeJournal.open(dir, KEY);
+    }
+
+    /**
+    * @return
+    *        Sequence numbers replayed, checked against the journaled card
+    */
+    private List<Long> replay(long before) throws Exception {
+        final List<Long> seqs = new ArrayList<Long>();
+        journal.replay(before, new SwipeJournal.Replay() {
+            @Override
+            public void entry(long seq, String json) {
+                try {
+                    JSONObject object = new JSONObject(json);
+                    assertEquals(seq, object.getLong("journal_seq"));
+                    assertEquals("4111111111111111", object.getString("card_number"));
+                } catch (Exception e) {
+                    throw new AssertionError(e);
+                }
+                seqs.add(seq);
+            }
+        });
+        return seqs;
+    }
+}
@@ -0,0 +1,106 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class SwipeQueueTest {
+
+    private static final String[] PANS = { "4111111111111111", "5555555555554444", "378282246310005" };
+
+    private final CardParser parser = new CardParser();
+
+    @Test
+    public void deliversOneAtATimeInOrder() {
+        SwipeQueue queue = new SwipeQueue(3, SwipeQueue.REJECT);
+        long first = queue.offer(card(0), 0);
+        long second = queue.offer(card(1), 0);
+
+        int slot = queue.takeForDelivery();
+        assertEquals(first, queue.idAt(slot));
+        assertEquals(PANS[0], pan(queue.cardAt(slot)));
+        assertEquals(-1, queue.takeForDelivery());
+
+        assertEquals(1, queue.ack(first));
+        slot = queue.takeForDelivery();
+        assertEquals(second, queue.idAt(slot));
+        assertEquals(PANS[1], pan(queue.cardAt(slot)));
+    }
+
+    @Test
+    public void dropOldestKeepsSwipeInFlight() {
+        SwipeQueue queue = new SwipeQueue(2, SwipeQueue.DROP_OLDEST);
+        long first = queue.offer(card(0), 0);
+        queue.offer(card(1), 0);
+        int slot = queue.takeForDelivery();
+
+        // Full, the first swipe in JavaScript's hands: the second goes
+        long third = queue.offer(card(2), 0);
+        assertTrue(third > 0);
+        assertEquals(1, queue.getDropped());
+        assertEquals(2, queue.size());
+
+        assertEquals(first, queue.idAt(slot));
+        assertEquals(PANS[0], pan(queue.cardAt(slot)));
+        assertEquals(-1, queue.takeForDelivery());
+
+        assertEquals(1, queue.ack(first));
+        slot = queue.takeForDelivery();
+        assertEquals(third, queue.idAt(slot));
+        assertEquals(PANS[2], pan(queue.cardAt(slot)));
+    }
+
+    @Test
+    public void dropOldestRejectsWhenEverySwipeIsInFlight() {
+        SwipeQueue queue = new SwipeQueue(1, SwipeQueue.DROP_OLDEST);
+        long first = queue.offer(card(0), 0);
+        int slot = queue.takeForDelivery();
+
+        assertFalse(queue.accepts());
+        assertEquals(-1, queue.offer(card(1), 0));
+        assertEquals(1, queue.getRejected());
+        assertEquals(0, queue.getDropped());
+
+        assertEquals(PANS[0], pan(queue.cardAt(slot)));
+        assertEquals(-1, queue.takeForDelivery());
+        assertEquals(1, queue.ack(first));
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void rejectsWhenFull() {
+        SwipeQueue queue = new SwipeQueue(1, SwipeQueue.REJECT);
+        queue.offer(card(0), 0);
+
+        assertFalse(queue.accepts());
+        assertEquals(-1, queue.offer(card(1), 0));
+        assertEquals(1, queue.getRejected());
+    }
+
+    @Test
+    public void ackIgnoresSwipesNotDelivered() {
+        SwipeQueue queue = new SwipeQueue(2, SwipeQueue.REJECT);
+        queue.offer(card(0), 0);
+        long second = queue.offer(card(1), 0);
+
+        assertEquals(0, queue.ack(second));
+        queue.takeForDelivery();
+        assertEquals(1, queue.ack(second));
+        assertEquals(1, queue.size());
+    }
+
+    private CardData card(int index) {
+        CardData card = new CardData();
+        byte[] data = (";" + PANS[index] + "=29121010000000000?").getBytes(StandardCharsets.US_ASCII);
+        assertTrue(parser.parse(data, card));
+        return card;
+    }
+
+    private static String pan(CardData card) {
+        return new String(card.pan, 0, card.panLength);
+    }
+}
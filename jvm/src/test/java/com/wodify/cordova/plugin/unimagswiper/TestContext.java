@@ -0,0 +1,167 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+/**
+* Application context for running the plugin on a plain JVM: files go to
+* a directory of its own, preferences are kept in memory, the XML config
+* is read from the plugin's sources and broadcast receivers are accepted
+* but never called, headset plugs being simulated instead.
+*/
+final class TestContext extends Context {
+
+    private static final String PACKAGE_NAME = "com.wodify.cordova.plugin.unimagswiper.test";
+
+    // Raw resource id of idt_unimagcfg.xml, the only resource
+    private static final int XML_CONFIG_ID = 1;
+
+    private final File filesDir;
+    private final File xmlConfig;
+    private final Map<String, Preferences> preferences = new HashMap<String, Preferences>();
+
+    /**
+    * @param filesDir
+    *        Directory standing in for the app's storage, created if needed
+    * @param xmlConfig
+    *        The idt_unimagcfg.xml file the plugin ships
+    */
+    TestContext(File filesDir, File xmlConfig) {
+        this.filesDir = filesDir;
+        this.xmlConfig = xmlConfig;
+        filesDir.mkdirs();
+    }
+
+    @Override
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    @Override
+    public File getFilesDir() {
+        return filesDir;
+    }
+
+    @Override
+    public synchronized SharedPreferences getSharedPreferences(String name, int mode) {
+        Preferences prefs = preferences.get(name);
+        if (prefs == null) {
+            prefs = new Preferences();
+            preferences.put(name, prefs);
+        }
+        return prefs;
+    }
+
+    @Override
+    public Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter) {
+        return null;
+    }
+
+    @Override
+    public void unregisterReceiver(BroadcastReceiver receiver) {}
+
+    @Override
+    public Resources getResources() {
+        return new Resources() {
+            @Override
+            public int getIdentifier(String name, String defType, String defPackage) {
+                return "idt_unimagcfg".equals(name) && "raw".equals(defType) ? XML_CONFIG_ID : 0;
+            }
+
+            @Override
+            public InputStream openRawResource(int id) {
+                try {
+                    return new FileInputStream(xmlConfig);
+                } catch (FileNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    @Override
+    public String getPackageName() {
+        return PACKAGE_NAME;
+    }
+
+    @Override
+    public PackageManager getPackageManager() {
+        return new PackageManager() {
+            @Override
+            public PackageInfo getPackageInfo(String packageName, int flags) {
+                PackageInfo info = new PackageInfo();
+                info.lastUpdateTime = xmlConfig.lastModified();
+                return info;
+            }
+        };
+    }
+
+    /**
+    * Preferences held in memory, committed as soon as they are edited.
+    */
+    private static final class Preferences implements SharedPreferences, SharedPreferences.Editor {
+        private final Map<String, Object> values = new HashMap<String, Object>();
+
+        @Override
+        public synchronized int getInt(String key, int defaultValue) {
+            Object value = values.get(key);
+            return value instanceof Integer ? (Integer) value : defaultValue;
+        }
+
+        @Override
+        public synchronized long getLong(String key, long defaultValue) {
+            Object value = values.get(key);
+            return value instanceof Long ? (Long) value : defaultValue;
+        }
+
+        @Override
+        public Editor edit() {
+            return this;
+        }
+
+        @Override
+        public synchronized Editor putInt(String key, int value) {
+            values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public synchronized Editor putLong(String key, long value) {
+            values.put(key, value);
+            return this;
+        }
+
+        @Override
+        public synchronized Editor remove(String key) {
+            values.remove(key);
+            return this;
+        }
+
+        @Override
+        public synchronized Editor clear() {
+            values.clear();
+            return this;
+        }
+
+        @Override
+        public boolean commit() {
+            return true;
+        }
+
+        @Override
+        public void apply() {}
+    }
+}
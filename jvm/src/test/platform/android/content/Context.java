@@ -0,0 +1,30 @@
+package android.content;
+
+import java.io.File;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+
+/**
+* Only the members the plugin calls, implemented by TestContext.
+*/
+public abstract class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    public abstract Context getApplicationContext();
+
+    public abstract File getFilesDir();
+
+    public abstract SharedPreferences getSharedPreferences(String name, int mode);
+
+    public abstract Intent registerReceiver(BroadcastReceiver receiver, IntentFilter filter);
+
+    public abstract void unregisterReceiver(BroadcastReceiver receiver);
+
+    public abstract Resources getResources();
+
+    public abstract String getPackageName();
+
+    public abstract PackageManager getPackageManager();
+}
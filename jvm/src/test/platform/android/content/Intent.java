@@ -0,0 +1,30 @@
+package android.content;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class Intent {
+
+    public static final String ACTION_HEADSET_PLUG = "android.intent.action.HEADSET_PLUG";
+
+    private final String action;
+    private final Map<String, Integer> extras = new HashMap<String, Integer>();
+
+    public Intent(String action) {
+        this.action = action;
+    }
+
+    public Intent putExtra(String name, int value) {
+        extras.put(name, value);
+        return this;
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public int getIntExtra(String name, int defaultValue) {
+        Integer value = extras.get(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,25 @@
+package android.content;
+
+public interface SharedPreferences {
+
+    int getInt(String key, int defaultValue);
+
+    long getLong(String key, long defaultValue);
+
+    Editor edit();
+
+    interface Editor {
+
+        Editor putInt(String key, int value);
+
+        Editor putLong(String key, long value);
+
+        Editor remove(String key);
+
+        Editor clear();
+
+        boolean commit();
+
+        void apply();
+    }
+}
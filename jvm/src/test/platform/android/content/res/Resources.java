@@ -0,0 +1,10 @@
+package android.content.res;
+
+import java.io.InputStream;
+
+public abstract class Resources {
+
+    public abstract int getIdentifier(String name, String defType, String defPackage);
+
+    public abstract InputStream openRawResource(int id);
+}
@@ -0,0 +1,6 @@
+package android.media;
+
+public class AudioManager {
+
+    public static final String ACTION_HEADSET_PLUG = "android.intent.action.HEADSET_PLUG";
+}
@@ -0,0 +1,13 @@
+package android.os;
+
+public class Build {
+
+    public static final String MANUFACTURER = "unknown";
+    public static final String MODEL = "jvm";
+
+    public static class VERSION {
+
+        // Latest level the plugin checks for, so every path is taken
+        public static final int SDK_INT = 24;
+    }
+}
@@ -0,0 +1,10 @@
+package android.os;
+
+public class Process {
+
+    private static final long START = SystemClock.elapsedRealtime();
+
+    public static long getStartElapsedRealtime() {
+        return START;
+    }
+}
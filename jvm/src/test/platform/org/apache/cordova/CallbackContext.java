@@ -0,0 +1,28 @@
+package org.apache.cordova;
+
+import org.json.JSONObject;
+
+public class CallbackContext {
+
+    public CallbackContext(String callbackId, CordovaWebView webView) {
+    }
+
+    public void sendPluginResult(PluginResult pluginResult) {
+    }
+
+    public void success() {
+        sendPluginResult(new PluginResult(PluginResult.Status.OK));
+    }
+
+    public void success(String message) {
+        sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+    }
+
+    public void success(JSONObject message) {
+        sendPluginResult(new PluginResult(PluginResult.Status.OK, message));
+    }
+
+    public void error(String message) {
+        sendPluginResult(new PluginResult(PluginResult.Status.ERROR, message));
+    }
+}
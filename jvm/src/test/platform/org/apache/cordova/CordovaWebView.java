@@ -0,0 +1,6 @@
+package org.apache.cordova;
+
+public interface CordovaWebView {
+
+    void sendJavascript(String statement);
+}
@@ -0,0 +1,63 @@
+package org.apache.cordova;
+
+import org.json.JSONObject;
+
+public class PluginResult {
+
+    public static final int MESSAGE_TYPE_STRING = 1;
+    public static final int MESSAGE_TYPE_JSON = 2;
+    public static final int MESSAGE_TYPE_NULL = 5;
+
+    public enum Status {
+        NO_RESULT,
+        OK,
+        ERROR
+    }
+
+    private final Status status;
+    private final int messageType;
+    private final String message;
+    private boolean keepCallback = false;
+
+    public PluginResult(Status status) {
+        this.status = status;
+        this.messageType = MESSAGE_TYPE_NULL;
+        this.message = null;
+    }
+
+    public PluginResult(Status status, String message) {
+        this.status = status;
+        this.messageType = MESSAGE_TYPE_STRING;
+        this.message = message;
+    }
+
+    public PluginResult(Status status, JSONObject message) {
+        this.status = status;
+        this.messageType = MESSAGE_TYPE_JSON;
+        this.message = message.toString();
+    }
+
+    public void setKeepCallback(boolean keepCallback) {
+        this.keepCallback = keepCallback;
+    }
+
+    public boolean getKeepCallback() {
+        return keepCallback;
+    }
+
+    public int getStatus() {
+        return status.ordinal();
+    }
+
+    public int getMessageType() {
+        return messageType;
+    }
+
+    public String getStrMessage() {
+        return message;
+    }
+
+    public String getMessage() {
+        return messageType == MESSAGE_TYPE_STRING ? JSONObject.quote(message) : message;
+    }
+}
@@ -0,0 +1,183 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+* Finds the brand of a card from the leading digits of its PAN. Published
+* issuer identification ranges are flattened once into sorted, disjoint
+* ranges of 8-digit prefixes, the more specific range winning where two
+* overlap, so a lookup is a binary search over two int arrays.
+*/
+final class CardBrands {
+
+    // Brands, indexes into NAMES
+    static final int UNKNOWN = 0;
+    static final int VISA = 1;
+    static final int MASTERCARD = 2;
+    static final int AMEX = 3;
+    static final int DISCOVER = 4;
+    static final int DINERS = 5;
+    static final int JCB = 6;
+    static final int UNIONPAY = 7;
+    static final int MAESTRO = 8;
+    static final int MIR = 9;
+
+    // Names reported to JavaScript
+    static final String[] NAMES = {
+        "unknown",
+        "visa",
+        "mastercard",
+        "amex",
+        "discover",
+        "diners",
+        "jcb",
+        "unionpay",
+        "maestro",
+        "mir"
+    };
+
+    // Digits of the prefixes ranges are flattened to
+    private static final int PREFIX_DIGITS = 8;
+
+    // Leading digits a masked PAN must keep for its brand to be found,
+    // as many as the longest prefix in RANGES
+    private static final int MIN_PREFIX_DIGITS = 6;
+
+    // Issuer ranges as { first prefix, last prefix, brand }, prefixes of
+    // any length up to PREFIX_DIGITS, first and last of equal length
+    private static final int[][] RANGES = {
+        { 4, 4, VISA },
+        { 51, 55, MASTERCARD },
+        { 2221, 2720, MASTERCARD },
+        { 34, 34, AMEX },
+        { 37, 37, AMEX },
+        { 6011, 6011, DISCOVER },
+        { 644, 649, DISCOVER },
+        { 65, 65, DISCOVER },
+        { 622126, 622925, DISCOVER },
+        { 300, 305, DINERS },
+        { 3095, 3095, DINERS },
+        { 36, 36, DINERS },
+        { 38, 39, DINERS },
+        { 3528, 3589, JCB },
+        { 62, 62, UNIONPAY },
+        { 5018, 5018, MAESTRO },
+        { 5020, 5020, MAESTRO },
+        { 5038, 5038, MAESTRO },
+        { 5893, 5893, MAESTRO },
+        { 6304, 6304, MAESTRO },
+        { 6759, 6759, MAESTRO },
+        { 6761, 6763, MAESTRO },
+        { 2200, 2204, MIR }
+    };
+
+    // Flattened ranges, sorted by first prefix
+    private static final int[] starts;
+    private static final int[] ends;
+    private static final int[] brands;
+
+    static {
+        // Split the number line at every range boundary, then give each
+        // piece the brand of the narrowest range covering it
+        int[] bounds = new int[RANGES.length * 2];
+        int[][] scaled = new int[RANGES.length][];
+
+        for (int i = 0; i < RANGES.length; i++) {
+            int scale = pow10(PREFIX_DIGITS - digits(RANGES[i][0]));
+            int lo = RANGES[i][0] * scale;
+            int hi = (RANGES[i][1] + 1) * scale - 1;
+
+            scaled[i] = new int[] { lo, hi, RANGES[i][2] };
+            bounds[i * 2] = lo;
+            bounds[i * 2 + 1] = hi + 1;
+        }
+        Arrays.sort(bounds);
+
+        List<int[]> flat = new ArrayList<int[]>();
+
+        for (int i = 0; i + 1 < bounds.length; i++) {
+            int lo = bounds[i];
+            int hi = bounds[i + 1] - 1;
+            if (lo > hi) {
+                continue;
+            }
+
+            int brand = UNKNOWN;
+            long width = Long.MAX_VALUE;
+            for (int[] range : scaled) {
+                if (range[0] <= lo && hi <= range[1] && (long) range[1] - range[0] < width) {
+                    brand = range[2];
+                    width = (long) range[1] - range[0];
+                }
+            }
+            if (brand == UNKNOWN) {
+                continue;
+            }
+
+            int[] last = flat.isEmpty() ? null : flat.get(flat.size() - 1);
+            if (last != null && last[2] == brand && last[1] + 1 == lo) {
+                last[1] = hi;
+            } else flat.add(new int[] { lo, hi, brand });
+        }
+
+        starts = new int[flat.size()];
+        ends = new int[flat.size()];
+        brands = new int[flat.size()];
+
+        for (int i = 0; i < flat.size(); i++) {
+            starts[i] = flat.get(i)[0];
+            ends[i] = flat.get(i)[1];
+            brands[i] = flat.get(i)[2];
+        }
+    }
+
+    private CardBrands() {}
+
+    /**
+    * Finds the brand of a card. A masked PAN is looked up from the digits
+    * before its first mask character.
+    *
+    * @param pan
+    *        PAN digits
+    * @param length
+    *        Number of digits
+    * @return
+    *        One of the brand constants, UNKNOWN if no range matches
+    */
+    static int lookup(char[] pan, int length) {
+        int prefix = 0;
+        int digits = 0;
+
+        while (digits < PREFIX_DIGITS && digits < length && pan[digits] >= '0' && pan[digits] <= '9') {
+            prefix = prefix * 10 + (pan[digits++] - '0');
+        }
+        if (digits < MIN_PREFIX_DIGITS) {
+            return UNKNOWN;
+        }
+        for (int i = digits; i < PREFIX_DIGITS; i++) {
+            prefix *= 10;
+        }
+
+        int i = Arrays.binarySearch(starts, prefix);
+        if (i < 0) {
+            // Range starting right before the prefix
+            i = -i - 2;
+        }
+
+        return i >= 0 && prefix <= ends[i] ? brands[i] : UNKNOWN;
+    }
+
+    private static int digits(int n) {
+        return String.valueOf(n).length();
+    }
+
+    private static int pow10(int n) {
+        int result = 1;
+        for (int i = 0; i < n; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
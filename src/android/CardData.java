@@ -0,0 +1,199 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.util.Arrays;
+
+/**
+* Reusable holder for the fields decoded from one swipe. Buffers are sized
+* for the largest values the ISO 7813 track formats allow and are reused
+* for every swipe, so parsing never allocates. Unlike Strings they can be
+* zeroed with wipe once the card has been delivered.
+*/
+final class CardData {
+
+    // Outcome of the LRC check of a track
+    static final int LRC_ABSENT = 0;
+    static final int LRC_VALID = 1;
+    static final int LRC_INVALID = 2;
+
+    // Track limits from ISO 7813
+    static final int MAX_PAN_LENGTH = 19;
+    static final int MAX_NAME_LENGTH = 26;
+
+    // Primary account number digits
+    final char[] pan = new char[MAX_PAN_LENGTH];
+    int panLength;
+
+    // Cardholder name parts from Track 1, trimmed
+    final char[] firstName = new char[MAX_NAME_LENGTH];
+    int firstNameLength;
+    final char[] lastName = new char[MAX_NAME_LENGTH];
+    int lastNameLength;
+
+    // Expiration date as YYMM digits
+    final char[] expiry = new char[4];
+    boolean hasExpiry;
+
+    // Service code digits
+    final char[] serviceCode = new char[3];
+    boolean hasServiceCode;
+
+    // Whether each track was read completely, sentinel to sentinel
+    boolean track1Present;
+    boolean track2Present;
+    boolean track3Present;
+
+    // LRC outcome of each track
+    int track1Lrc;
+    int track2Lrc;
+    int track3Lrc;
+
+    // Offset and length of each track within the raw data, sentinels included
+    int track1Offset;
+    int track1Length;
+    int track2Offset;
+    int track2Length;
+    int track3Offset;
+    int track3Length;
+
+    // True if the PAN passes the Luhn check
+    boolean luhnValid;
+
+    // Card brand from the PAN's issuer range, one of the CardBrands constants
+    int brand;
+
+    // Frame of an encrypting head, the fields above then coming from its
+    // masked tracks
+    final EncryptedTracks encrypted = new EncryptedTracks();
+
+    // Sequence number in the swipe journal, 0 if not journaled
+    long journalSeq;
+
+    // True if the same card was swiped within the duplicate window
+    boolean duplicate;
+
+    // Raw data with whitespace removed, grown only when a longer swipe arrives
+    byte[] trimmed = new byte[512];
+    int trimmedLength;
+
+    /**
+    * Clears all fields before a new swipe is parsed.
+    */
+    void reset() {
+        panLength = 0;
+        firstNameLength = 0;
+        lastNameLength = 0;
+        hasExpiry = false;
+        hasServiceCode = false;
+        track1Present = false;
+        track2Present = false;
+        track3Present = false;
+        track1Lrc = LRC_ABSENT;
+        track2Lrc = LRC_ABSENT;
+        track3Lrc = LRC_ABSENT;
+        track1Offset = 0;
+        track1Length = 0;
+        track2Offset = 0;
+        track2Length = 0;
+        track3Offset = 0;
+        track3Length = 0;
+        luhnValid = false;
+        brand = CardBrands.UNKNOWN;
+        encrypted.reset();
+        journalSeq = 0;
+        duplicate = false;
+        trimmedLength = 0;
+    }
+
+    /**
+    * Zeroes every buffer and clears all fields, so no card data stays in
+    * memory once the swipe was delivered.
+    */
+    void wipe() {
+        Arrays.fill(pan, '\0');
+        Arrays.fill(firstName, '\0');
+        Arrays.fill(lastName, '\0');
+        Arrays.fill(expiry, '\0');
+        Arrays.fill(serviceCode, '\0');
+        Arrays.fill(trimmed, 0, trimmedLength, (byte) 0);
+        encrypted.wipe();
+        reset();
+    }
+
+    /**
+    * Replaces the raw data buffer with a larger one, zeroing the old one.
+    *
+    * @param capacity
+    *        Bytes the new buffer must hold at least
+    */
+    void growTrimmed(int capacity) {
+        byte[] grown = new byte[Math.max(capacity, trimmed.length * 2)];
+        System.arraycopy(trimmed, 0, grown, 0, trimmedLength);
+        Arrays.fill(trimmed, (byte) 0);
+        trimmed = grown;
+    }
+
+    /**
+    * Copies all fields of another swipe, so it can be kept while this
+    * parser's result is reused. What the other swipe's values do not
+    * overwrite is zeroed, as by wipe.
+    *
+    * @param other
+    *        Swipe to copy
+    */
+    void copyFrom(CardData other) {
+        System.arraycopy(other.pan, 0, pan, 0, other.panLength);
+        Arrays.fill(pan, other.panLength, pan.length, '\0');
+        panLength = other.panLength;
+        System.arraycopy(other.firstName, 0, firstName, 0, other.firstNameLength);
+        Arrays.fill(firstName, other.firstNameLength, firstName.length, '\0');
+        firstNameLength = other.firstNameLength;
+        System.arraycopy(other.lastName, 0, lastName, 0, other.lastNameLength);
+        Arrays.fill(lastName, other.lastNameLength, lastName.length, '\0');
+        lastNameLength = other.lastNameLength;
+        System.arraycopy(other.expiry, 0, expiry, 0, expiry.length);
+        hasExpiry = other.hasExpiry;
+        System.arraycopy(other.serviceCode, 0, serviceCode, 0, serviceCode.length);
+        hasServiceCode = other.hasServiceCode;
+        track1Present = other.track1Present;
+        track2Present = other.track2Present;
+        track3Present = other.track3Present;
+        track1Lrc = other.track1Lrc;
+        track2Lrc = other.track2Lrc;
+        track3Lrc = other.track3Lrc;
+        track1Offset = other.track1Offset;
+        track1Length = other.track1Length;
+        track2Offset = other.track2Offset;
+        track2Length = other.track2Length;
+        track3Offset = other.track3Offset;
+        track3Length = other.track3Length;
+        luhnValid = other.luhnValid;
+        brand = other.brand;
+        encrypted.copyFrom(other.encrypted);
+        journalSeq = other.journalSeq;
+        duplicate = other.duplicate;
+
+        if (trimmed.length < other.trimmedLength) {
+            growTrimmed(other.trimmed.length);
+        }
+        System.arraycopy(other.trimmed, 0, trimmed, 0, other.trimmedLength);
+        if (trimmedLength > other.trimmedLength) {
+            Arrays.fill(trimmed, other.trimmedLength, trimmedLength, (byte) 0);
+        }
+        trimmedLength = other.trimmedLength;
+    }
+
+    /**
+    * Whether enough was decoded to report a successful swipe: a PAN and
+    * expiration date from either financial track.
+    */
+    boolean isValid() {
+        return panLength > 0 && hasExpiry;
+    }
+
+    /**
+    * Whether the cardholder name was decoded from Track 1.
+    */
+    boolean hasName() {
+        return lastNameLength > 0;
+    }
+}
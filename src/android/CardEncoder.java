@@ -0,0 +1,273 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+/**
+* Writes a decoded card as swipe_success data straight from the buffers
+* of a CardData. The card's JSON object is emitted already quoted as a
+* JSON string, the form JavaScript receives it in, so it is never built
+* as an intermediate object or String.
+*
+* Also keeps an estimate of how many bytes each encoding makes the VM
+* allocate: growth of the destination buffer plus the card's share of
+* the String finally handed to the WebView, counted as two bytes a char.
+* Android offers no cheap way to measure allocation per thread, so this
+* is worked out from buffer sizes rather than measured; the allocation
+* actually measured on a JVM is checked by CardEncoderTest and reported
+* by EventEncoderBenchmark under -prof gc.
+*/
+final class CardEncoder implements EventChannel.Payload {
+
+    // Replacement for bytes that are not ASCII, as String decoding does
+    private static final char REPLACEMENT = '\ufffd';
+
+    // Digits of binary fields, written as hex
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    // Card being encoded
+    private CardData card;
+
+    // Queue position of the card for acknowledgement, 0 if not queued
+    private long swipeId;
+
+    // Bytes estimated for the last encoding
+    private long lastEstimatedBytes;
+
+    // Totals since the plugin started
+    private long totalEstimatedBytes;
+    private long encodedCount;
+
+    /**
+    * Select the card to encode.
+    *
+    * @param card
+    *        Decoded card, must not change until encoding is done
+    * @return
+    *        This encoder, to be posted as event data
+    */
+    CardEncoder set(CardData card) {
+        return set(card, 0);
+    }
+
+    /**
+    * Select a queued card to encode, along with the id JavaScript
+    * acknowledges it with.
+    *
+    * @param card
+    *        Decoded card, must not change until encoding is done
+    * @param swipeId
+    *        Id of the card in the swipe queue
+    * @return
+    *        This encoder, to be posted as event data
+    */
+    CardEncoder set(CardData card, long swipeId) {
+        this.card = card;
+        this.swipeId = swipeId;
+        return this;
+    }
+
+    /**
+    * Append the card as a quoted JSON string holding its JSON object.
+    */
+    @Override
+    public void appendTo(StringBuilder json) {
+        int capacity = json.capacity();
+        int length = json.length();
+
+        json.append('"');
+        appendObject(json, true);
+        json.append('"');
+
+        int grown = json.capacity() > capacity ? json.capacity() * 2 : 0;
+        record(grown + (json.length() - length) * 2);
+    }
+
+    /**
+    * Format the card as a plain JSON object, for delivery paths that
+    * quote it themselves.
+    *
+    * @return
+    *        The card's JSON object
+    */
+    String toJSONString() {
+        StringBuilder json = new StringBuilder(256 + card.trimmedLength + card.encrypted.frameLength * 2);
+        appendObject(json, false);
+        record(json.capacity() * 2 + json.length() * 2);
+
+        String result = json.toString();
+
+        // Zero the copy of the card left in the builder
+        int length = json.length();
+        json.setLength(0);
+        json.setLength(length);
+        return result;
+    }
+
+    /**
+    * Append the card's plain JSON object to a buffer the caller wipes,
+    * e.g. for the swipe journal. Not counted in the allocation estimate.
+    *
+    * @param json
+    *        Buffer to append to
+    */
+    void appendJSON(StringBuilder json) {
+        appendObject(json, false);
+    }
+
+    /**
+    * @return
+    *        Estimated bytes allocated by the last encoding
+    */
+    synchronized long getLastEstimatedBytes() {
+        return lastEstimatedBytes;
+    }
+
+    /**
+    * @return
+    *        Estimated average bytes allocated per encoded card
+    */
+    synchronized long getEstimatedBytesPerEvent() {
+        return encodedCount > 0 ? totalEstimatedBytes / encodedCount : 0;
+    }
+
+    /**
+    * @return
+    *        Number of cards encoded
+    */
+    synchronized long getEncodedCount() {
+        return encodedCount;
+    }
+
+    private synchronized void record(long bytes) {
+        lastEstimatedBytes = bytes;
+        totalEstimatedBytes += bytes;
+        encodedCount++;
+    }
+
+    /**
+    * Append the card's JSON object, escaped once more when nested inside
+    * a JSON string. Expiration date, name and brand are only written when
+    * the tracks were decoded, which masking may prevent on an encrypting
+    * head, so buffers that were never filled are not sent.
+    */
+    private void appendObject(StringBuilder json, boolean nested) {
+        json.append('{');
+        appendKey(json, "card_number", nested);
+        appendValue(json, card.pan, 0, card.panLength, nested);
+        if (card.isValid()) {
+            json.append(',');
+            appendKey(json, "expiry_month", nested);
+            appendValue(json, card.expiry, 2, 2, nested);
+            json.append(',');
+            appendKey(json, "expiry_year", nested);
+            appendValue(json, card.expiry, 0, 2, nested);
+            json.append(',');
+            appendKey(json, "first_name", nested);
+            appendValue(json, card.firstName, 0, card.firstNameLength, nested);
+            json.append(',');
+            appendKey(json, "last_name", nested);
+            appendValue(json, card.lastName, 0, card.lastNameLength, nested);
+            json.append(',');
+            appendKey(json, "card_brand", nested);
+            appendQuote(json, nested);
+            json.append(CardBrands.NAMES[card.brand]);
+            appendQuote(json, nested);
+        }
+        json.append(',');
+        appendKey(json, "luhn_valid", nested);
+        json.append(card.luhnValid);
+        json.append(',');
+        appendKey(json, "trimmedUnimagData", nested);
+        appendQuote(json, nested);
+        for (int i = 0; i < card.trimmedLength; i++) {
+            int b = card.trimmed[i] & 0xff;
+            appendChar(json, b < 0x80 ? (char) b : REPLACEMENT, nested);
+        }
+        appendQuote(json, nested);
+        if (card.encrypted.present) {
+            appendEncrypted(json, card.encrypted, nested);
+        }
+        if (swipeId > 0) {
+            json.append(',');
+            appendKey(json, "swipe_id", nested);
+            json.append(swipeId);
+        }
+        if (card.duplicate) {
+            json.append(',');
+            appendKey(json, "duplicate", nested);
+            json.append(true);
+        }
+        if (card.journalSeq > 0) {
+            json.append(',');
+            appendKey(json, "journal_seq", nested);
+            json.append(card.journalSeq);
+        }
+        json.append('}');
+    }
+
+    /**
+    * Append the fields of an encrypted frame, masked tracks as strings and
+    * binary fields as hex, straight from the frame's bytes.
+    */
+    private static void appendEncrypted(StringBuilder json, EncryptedTracks encrypted, boolean nested) {
+        json.append(',');
+        appendKey(json, "encrypted", nested);
+        json.append(true);
+
+        for (int field = 0; field < EncryptedTracks.FIELD_COUNT; field++) {
+            int offset = encrypted.offsets[field];
+            int end = offset + encrypted.lengths[field];
+            if (offset == end) {
+                continue;
+            }
+
+            json.append(',');
+            appendKey(json, EncryptedTracks.FIELD_NAMES[field], nested);
+            appendQuote(json, nested);
+            for (int i = offset; i < end; i++) {
+                int b = encrypted.frame[i] & 0xff;
+                if (!EncryptedTracks.isText(field)) {
+                    json.append(HEX_DIGITS[b >> 4]).append(HEX_DIGITS[b & 0xf]);
+                } else appendChar(json, b < 0x80 ? (char) b : REPLACEMENT, nested);
+            }
+            appendQuote(json, nested);
+        }
+    }
+
+    private static void appendKey(StringBuilder json, String key, boolean nested) {
+        appendQuote(json, nested);
+        json.append(key);
+        appendQuote(json, nested);
+        json.append(':');
+    }
+
+    private static void appendValue(StringBuilder json, char[] chars, int offset, int length, boolean nested) {
+        appendQuote(json, nested);
+        for (int i = offset; i < offset + length; i++) {
+            appendChar(json, chars[i], nested);
+        }
+        appendQuote(json, nested);
+    }
+
+    private static void appendQuote(StringBuilder json, boolean nested) {
+        if (nested) {
+            json.append('\\');
+        }
+        json.append('"');
+    }
+
+    /**
+    * Append a character of a string value. Track 1 data may contain '"'
+    * and '\' which need escaping, twice when nested. NUL, which only
+    * comes from padding or zeroed buffers, is left out.
+    */
+    private static void appendChar(StringBuilder json, char c, boolean nested) {
+        if (c == '\0') {
+            return;
+        } else if (c == '"' || c == '\\') {
+            json.append(nested ? "\\\\\\" : "\\").append(c);
+        } else if (c < 0x20) {
+            json.append(nested ? "\\\\u00" : "\\u00");
+            json.append(Character.forDigit(c >> 4, 16));
+            json.append(Character.forDigit(c & 0xf, 16));
+        } else json.append(c);
+    }
+}
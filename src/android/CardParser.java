@@ -0,0 +1,520 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.util.Arrays;
+
+/**
+* Single pass parser for the ASCII track data sent by the reader. Track 1
+* ("%B...^NAME^YYMM...?"), Track 2 (";PAN=YYMM...?") and Track 3 are
+* decoded straight from the byte array into a reusable CardData, checking
+* the longitudinal redundancy character of each track when the reader
+* appends one and the Luhn digit of the PAN. Track 3 may start with the
+* same ';' as Track 2; such a track is taken for Track 3 if it follows
+* Track 2 or is longer than Track 2 can be.
+*
+* An instance keeps scratch buffers, zeroed after each call, and must only
+* be used from one thread at a time.
+*/
+final class CardParser {
+
+    // Parser states
+    private static final int SEEK = 0;
+    private static final int T1_FORMAT = 1;
+    private static final int T1_PAN = 2;
+    private static final int T1_NAME = 3;
+    private static final int T1_EXPIRY = 4;
+    private static final int T1_SERVICE = 5;
+    private static final int T1_DATA = 6;
+    private static final int T2_PAN = 7;
+    private static final int T2_EXPIRY = 8;
+    private static final int T2_SERVICE = 9;
+    private static final int T2_DATA = 10;
+    private static final int T3_DATA = 11;
+    private static final int SKIP = 12;
+    private static final int LRC = 13;
+
+    // Parts of the Track 1 name field
+    private static final int LAST_NAME = 0;
+    private static final int FIRST_NAME = 1;
+
+    // Sentinels and field separators
+    private static final int T1_START = '%';
+    private static final int T2_START = ';';
+    private static final int T3_START = '+';
+    private static final int END = '?';
+    private static final int T1_SEPARATOR = '^';
+    private static final int T2_SEPARATOR = '=';
+    private static final int NAME_SEPARATOR = '/';
+
+    // Characters Track 2 holds at most between its sentinels, Track 3
+    // holding more with its fixed fields alone (ISO/IEC 7813 and 4909)
+    private static final int MAX_TRACK2_DATA = 37;
+
+    // Replaces PAN digits in masked tracks
+    private static final int MASK = '*';
+
+    // Scratch fields of the track being decoded
+    private final char[] pan = new char[CardData.MAX_PAN_LENGTH];
+    private int panLength;
+    private final char[] firstName = new char[CardData.MAX_NAME_LENGTH];
+    private int firstNameLength;
+    private int firstNameTrimmed;
+    private final char[] lastName = new char[CardData.MAX_NAME_LENGTH];
+    private int lastNameLength;
+    private int lastNameTrimmed;
+    private int namePart;
+    private final char[] expiry = new char[4];
+    private int expiryLength;
+    private final char[] serviceCode = new char[3];
+    private int serviceCodeLength;
+
+    // Track being decoded, 1 to 3
+    private int track;
+
+    // Whether mask characters are accepted in the PAN
+    private boolean masked;
+
+    // Whether the current track has the fields of a financial card
+    private boolean financial;
+
+    // Running LRC of the current track
+    private int lrc;
+
+    // Where the current track started within the data
+    private int trackOffset;
+    private int trackLength;
+
+    /**
+    * Parses raw card data.
+    *
+    * @param data
+    *        Raw data from the reader
+    * @param out
+    *        Receives the decoded fields, reset first
+    * @return
+    *        True if a PAN and expiration date were decoded
+    */
+    boolean parse(byte[] data, CardData out) {
+        return parse(data, 0, data.length, out);
+    }
+
+    /**
+    * Parses masked tracks, as sent along with encrypted ones, whose PAN
+    * keeps only a few digits. The Luhn check is not run on such a PAN.
+    *
+    * @param data
+    *        Masked track data
+    * @param offset
+    *        Index of the first byte to parse
+    * @param length
+    *        Number of bytes to parse
+    * @param out
+    *        Receives the decoded fields, reset first
+    * @return
+    *        True if a PAN and expiration date were decoded
+    */
+    boolean parseMasked(byte[] data, int offset, int length, CardData out) {
+        masked = true;
+        try {
+            return parse(data, offset, length, out);
+        } finally {
+            masked = false;
+        }
+    }
+
+    /**
+    * Parses part of an array of raw card data.
+    *
+    * @param data
+    *        Raw data from the reader
+    * @param offset
+    *        Index of the first byte to parse
+    * @param length
+    *        Number of bytes to parse
+    * @param out
+    *        Receives the decoded fields, reset first
+    * @return
+    *        True if a PAN and expiration date were decoded
+    */
+    boolean parse(byte[] data, int offset, int length, CardData out) {
+        out.reset();
+
+        int state = SEEK;
+        boolean sawTrack2 = false;
+        int end = offset + length;
+
+        for (int i = offset; i < end; i++) {
+            int c = data[i] & 0xff;
+
+            if (!isWhitespace(c)) {
+                appendTrimmed(out, (byte) c);
+            }
+
+            if (state == LRC) {
+                // Only the last byte of a track can be its LRC, anything
+                // else is data following the end sentinel
+                if (isLrcCandidate(c) && isTrackEnd(data, i + 1, end)) {
+                    finishTrack(out, c == expectedLrc() ? CardData.LRC_VALID : CardData.LRC_INVALID);
+                    state = SEEK;
+                    continue;
+                }
+                finishTrack(out, CardData.LRC_ABSENT);
+                state = SEEK;
+            }
+
+            if (state != SEEK && state != SKIP && c == END) {
+                updateLrc(c);
+                trackLength = i - trackOffset + 1;
+                state = LRC;
+                continue;
+            }
+
+            // A start sentinel before the end sentinel means the previous
+            // track was cut short, so decoding restarts from here
+            if (state == SEEK || isStartSentinel(c)) {
+                boolean track3 = c == T2_START && (sawTrack2 || exceedsTrack2(data, i + 1, end));
+                state = startTrack(c, i, track3);
+                if (track == 2) {
+                    sawTrack2 = true;
+                }
+                continue;
+            }
+
+            if (state == SKIP) {
+                if (c == END) {
+                    state = SEEK;
+                }
+                continue;
+            }
+
+            if (!isValidChar(c)) {
+                state = SKIP;
+                continue;
+            }
+            updateLrc(c);
+
+            switch (state) {
+                case T1_FORMAT:
+                    financial = c == 'B';
+                    state = financial ? T1_PAN : T1_DATA;
+                    break;
+                case T1_PAN:
+                    if (isDigit(c) || (masked && c == MASK)) {
+                        state = appendPan(c) ? T1_PAN : SKIP;
+                    } else if (c == T1_SEPARATOR) {
+                        state = panLength > 0 ? T1_NAME : SKIP;
+                    } else if (c != ' ') {
+                        state = SKIP;
+                    }
+                    break;
+                case T1_NAME:
+                    if (c == T1_SEPARATOR) {
+                        state = T1_EXPIRY;
+                    } else if (!appendName(c)) {
+                        state = SKIP;
+                    }
+                    break;
+                case T1_EXPIRY:
+                case T2_EXPIRY:
+                    if (isDigit(c)) {
+                        expiry[expiryLength++] = (char) c;
+                        if (expiryLength == expiry.length) {
+                            state = state == T1_EXPIRY ? T1_SERVICE : T2_SERVICE;
+                        }
+                    } else state = SKIP;
+                    break;
+                case T1_SERVICE:
+                case T2_SERVICE:
+                    if (isDigit(c)) {
+                        serviceCode[serviceCodeLength++] = (char) c;
+                        if (serviceCodeLength < serviceCode.length) {
+                            break;
+                        }
+                    }
+                    state = state == T1_SERVICE ? T1_DATA : T2_DATA;
+                    break;
+                case T2_PAN:
+                    if (isDigit(c) || (masked && c == MASK)) {
+                        state = appendPan(c) ? T2_PAN : SKIP;
+                    } else if (c == T2_SEPARATOR) {
+                        state = panLength > 0 ? T2_EXPIRY : SKIP;
+                    } else state = SKIP;
+                    break;
+                default:
+                    // Discretionary data, only covered by the LRC
+                    break;
+            }
+        }
+
+        if (state == LRC) {
+            finishTrack(out, CardData.LRC_ABSENT);
+        }
+
+        if (out.isValid()) {
+            out.luhnValid = !masked && isLuhnValid(out.pan, out.panLength);
+            out.brand = CardBrands.lookup(out.pan, out.panLength);
+        }
+
+        wipeScratch();
+
+        return out.isValid();
+    }
+
+    /**
+    * Zeroes the scratch buffers, so card data is only left in the
+    * CardData it was decoded into.
+    */
+    private void wipeScratch() {
+        Arrays.fill(pan, '\0');
+        Arrays.fill(firstName, '\0');
+        Arrays.fill(lastName, '\0');
+        Arrays.fill(expiry, '\0');
+        Arrays.fill(serviceCode, '\0');
+    }
+
+    /**
+    * Checks the Luhn digit of a PAN.
+    *
+    * @param digits
+    *        PAN digits
+    * @param length
+    *        Number of digits
+    * @return
+    *        True if the check digit matches
+    */
+    static boolean isLuhnValid(char[] digits, int length) {
+        if (length < 2) {
+            return false;
+        }
+
+        int sum = 0;
+        boolean doubled = false;
+
+        for (int i = length - 1; i >= 0; i--) {
+            int d = digits[i] - '0';
+            if (doubled) {
+                d *= 2;
+                if (d > 9) {
+                    d -= 9;
+                }
+            }
+            sum += d;
+            doubled = !doubled;
+        }
+
+        return sum % 10 == 0;
+    }
+
+    /**
+    * Resets scratch fields for the track whose start sentinel was found.
+    *
+    * @param track3
+    *        Whether a ';' starts Track 3 rather than Track 2
+    * @return
+    *        Next parser state
+    */
+    private int startTrack(int c, int offset, boolean track3) {
+        if (c == T1_START) {
+            track = 1;
+        } else if (c == T2_START && !track3) {
+            track = 2;
+        } else if (c == T2_START || c == T3_START) {
+            track = 3;
+        } else {
+            return SEEK;
+        }
+
+        panLength = 0;
+        firstNameLength = 0;
+        firstNameTrimmed = 0;
+        lastNameLength = 0;
+        lastNameTrimmed = 0;
+        namePart = LAST_NAME;
+        expiryLength = 0;
+        serviceCodeLength = 0;
+        financial = track == 2;
+        trackOffset = offset;
+        trackLength = 0;
+
+        // Track 3 uses the same start sentinel code as Track 2 even when
+        // the reader prints it as '+'
+        lrc = track == 1 ? (c - 0x20) & 0x3f : (T2_START - 0x30) & 0x0f;
+
+        switch (track) {
+            case 1:
+                return T1_FORMAT;
+            case 2:
+                return T2_PAN;
+            default:
+                return T3_DATA;
+        }
+    }
+
+    /**
+    * Records a track once its end sentinel and optional LRC were read.
+    */
+    private void finishTrack(CardData out, int lrcStatus) {
+        switch (track) {
+            case 1:
+                out.track1Present = true;
+                out.track1Lrc = lrcStatus;
+                out.track1Offset = trackOffset;
+                out.track1Length = trackLength;
+                break;
+            case 2:
+                out.track2Present = true;
+                out.track2Lrc = lrcStatus;
+                out.track2Offset = trackOffset;
+                out.track2Length = trackLength;
+                break;
+            default:
+                out.track3Present = true;
+                out.track3Lrc = lrcStatus;
+                out.track3Offset = trackOffset;
+                out.track3Length = trackLength;
+                return;
+        }
+
+        // A corrupted read must not produce card fields
+        if (!financial || lrcStatus == CardData.LRC_INVALID
+                || panLength == 0 || expiryLength != expiry.length) {
+            return;
+        }
+
+        if (track == 1 && !out.hasName()) {
+            System.arraycopy(lastName, 0, out.lastName, 0, lastNameTrimmed);
+            out.lastNameLength = lastNameTrimmed;
+            System.arraycopy(firstName, 0, out.firstName, 0, firstNameTrimmed);
+            out.firstNameLength = firstNameTrimmed;
+        }
+
+        // The first complete financial track wins
+        if (!out.isValid()) {
+            System.arraycopy(pan, 0, out.pan, 0, panLength);
+            out.panLength = panLength;
+            System.arraycopy(expiry, 0, out.expiry, 0, expiry.length);
+            out.hasExpiry = true;
+            if (serviceCodeLength == serviceCode.length) {
+                System.arraycopy(serviceCode, 0, out.serviceCode, 0, serviceCode.length);
+                out.hasServiceCode = true;
+            }
+        }
+    }
+
+    private boolean appendPan(int c) {
+        if (panLength == pan.length) {
+            return false;
+        }
+        pan[panLength++] = (char) c;
+        return true;
+    }
+
+    /**
+    * Appends a Track 1 name character, splitting "LAST/FIRST" and trimming
+    * surrounding spaces of each part.
+    */
+    private boolean appendName(int c) {
+        if (c == NAME_SEPARATOR) {
+            // Anything after a second separator (e.g. a title) is ignored
+            namePart++;
+            return true;
+        }
+
+        if (namePart == LAST_NAME) {
+            if (lastNameLength == 0 && c == ' ') {
+                return true;
+            }
+            if (lastNameLength == lastName.length) {
+                return false;
+            }
+            lastName[lastNameLength++] = (char) c;
+            if (c != ' ') {
+                lastNameTrimmed = lastNameLength;
+            }
+        } else if (namePart == FIRST_NAME) {
+            if (firstNameLength == 0 && c == ' ') {
+                return true;
+            }
+            if (firstNameLength == firstName.length) {
+                return false;
+            }
+            firstName[firstNameLength++] = (char) c;
+            if (c != ' ') {
+                firstNameTrimmed = firstNameLength;
+            }
+        }
+        return true;
+    }
+
+    private void updateLrc(int c) {
+        if (track == 1) {
+            lrc ^= (c - 0x20) & 0x3f;
+        } else lrc ^= (c - 0x30) & 0x0f;
+    }
+
+    private int expectedLrc() {
+        return track == 1 ? lrc + 0x20 : lrc + 0x30;
+    }
+
+    private boolean isValidChar(int c) {
+        if (masked && c == MASK) {
+            return true;
+        }
+        return track == 1 ? c >= 0x20 && c <= 0x5f : c >= 0x30 && c <= 0x3f;
+    }
+
+    private boolean isLrcCandidate(int c) {
+        return isValidChar(c) && !isWhitespace(c) && !isStartSentinel(c);
+    }
+
+    /**
+    * Whether a track holds more characters than Track 2 can, counting from
+    * a position to its end sentinel, the next start sentinel or the end
+    * of the data.
+    */
+    private boolean exceedsTrack2(byte[] data, int from, int end) {
+        int length = 0;
+        for (int i = from; i < end; i++) {
+            int c = data[i] & 0xff;
+            if (c == END || isStartSentinel(c)) {
+                break;
+            }
+            if (++length > MAX_TRACK2_DATA) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+    * Whether nothing but whitespace lies between a position and the end
+    * of the data or the next start sentinel.
+    */
+    private boolean isTrackEnd(byte[] data, int from, int end) {
+        for (int i = from; i < end; i++) {
+            int c = data[i] & 0xff;
+            if (!isWhitespace(c)) {
+                return isStartSentinel(c);
+            }
+        }
+        return true;
+    }
+
+    private boolean isStartSentinel(int c) {
+        return c == T1_START || c == T2_START || (c == T3_START && track != 1);
+    }
+
+    private static boolean isDigit(int c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0b || c == '\f' || c == '\r';
+    }
+
+    private static void appendTrimmed(CardData out, byte b) {
+        if (out.trimmedLength == out.trimmed.length) {
+            out.growTrimmed(out.trimmedLength + 1);
+        }
+        out.trimmed[out.trimmedLength++] = b;
+    }
+}
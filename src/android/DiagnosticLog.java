@@ -0,0 +1,187 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+* In-memory ring of the plugin's most recent diagnostic records: state
+* transitions, events fired, SDK callbacks, JavaScript actions and errors.
+* Arrays are allocated once and records only store references to strings
+* that already exist, so recording costs a few array writes and can stay
+* on in production. Records are formatted only when exported.
+*
+* Records never hold card data.
+*/
+final class DiagnosticLog {
+
+    // Kinds of record
+    static final int STATE = 0;
+    static final int EVENT = 1;
+    static final int SDK = 2;
+    static final int ACTION = 3;
+    static final int ERROR = 4;
+
+    // Labels of the kinds above when exported
+    private static final String[] TYPE_NAMES = { "STATE", "EVENT", "SDK", "ACTION", "ERROR" };
+
+    // Ring of records, slot i holding record number next - size + i
+    private final long[] times;
+    private final int[] types;
+    private final String[] names;
+    private final Object[] details;
+
+    // Number of records ever written
+    private long next = 0;
+
+    /**
+    * @param capacity
+    *        Records kept, older ones are overwritten
+    */
+    DiagnosticLog(int capacity) {
+        times = new long[capacity];
+        types = new int[capacity];
+        names = new String[capacity];
+        details = new Object[capacity];
+    }
+
+    /**
+    * Records something that happened.
+    *
+    * @param type
+    *        Kind of record
+    * @param name
+    *        What happened, e.g. an event or action name
+    */
+    void record(int type, String name) {
+        record(type, name, null);
+    }
+
+    /**
+    * Prints an exception and records it as an error.
+    *
+    * @param e
+    *        Exception caught
+    */
+    void recordError(Exception e) {
+        e.printStackTrace();
+        record(ERROR, e.getClass().getName(), e);
+    }
+
+    /**
+    * Records something that happened, with details formatted on export.
+    *
+    * @param type
+    *        Kind of record
+    * @param name
+    *        What happened, e.g. an event or action name
+    * @param detail
+    *        Message or Throwable, may be null
+    */
+    synchronized void record(int type, String name, Object detail) {
+        int slot = (int) (next++ % times.length);
+
+        times[slot] = System.nanoTime();
+        types[slot] = type;
+        names[slot] = name;
+        details[slot] = detail;
+    }
+
+    /**
+    * Copies the records so they can be written out while recording goes
+    * on.
+    *
+    * @return
+    *        Records in the order they were written
+    */
+    synchronized Snapshot snapshot() {
+        int size = (int) Math.min(next, times.length);
+        Snapshot snapshot = new Snapshot(size, next - size);
+
+        for (int i = 0; i < size; i++) {
+            int slot = (int) ((next - size + i) % times.length);
+            snapshot.times[i] = times[slot];
+            snapshot.types[i] = types[slot];
+            snapshot.names[i] = names[slot];
+            snapshot.details[i] = details[slot];
+        }
+
+        return snapshot;
+    }
+
+    /**
+    * Records copied out of the ring, with the clocks needed to turn their
+    * monotonic times into dates.
+    */
+    static final class Snapshot {
+        private final long[] times;
+        private final int[] types;
+        private final String[] names;
+        private final Object[] details;
+
+        // Number of the first record, earlier ones were overwritten
+        private final long first;
+
+        private final long takenAtNanos = System.nanoTime();
+        private final long takenAtMillis = System.currentTimeMillis();
+
+        private Snapshot(int size, long first) {
+            times = new long[size];
+            types = new int[size];
+            names = new String[size];
+            details = new Object[size];
+            this.first = first;
+        }
+
+        int size() {
+            return times.length;
+        }
+
+        /**
+        * Writes the records as text, one per line.
+        *
+        * @param file
+        *        File to (over)write
+        */
+        void write(File file) throws IOException {
+            Writer out = new BufferedWriter(new FileWriter(file));
+            SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+
+            try {
+                if (first > 0) {
+                    out.write(first + " earlier records were overwritten\n");
+                }
+
+                for (int i = 0; i < times.length; i++) {
+                    long millis = takenAtMillis - (takenAtNanos - times[i]) / 1000000;
+
+                    out.write(format.format(new Date(millis)));
+                    out.write(' ');
+                    out.write(TYPE_NAMES[types[i]]);
+                    out.write(' ');
+                    out.write(String.valueOf(names[i]));
+
+                    if (details[i] instanceof Throwable) {
+                        out.write(' ');
+                        out.write(String.valueOf(details[i]));
+                        for (StackTraceElement frame : ((Throwable) details[i]).getStackTrace()) {
+                            out.write("\n    at ");
+                            out.write(frame.toString());
+                        }
+                    } else if (details[i] != null) {
+                        out.write(' ');
+                        out.write(details[i].toString());
+                    }
+                    out.write('\n');
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+* Recognizes a card swiped again within a time window, e.g. a member
+* swiping twice or the reader decoding one pass twice.
+*
+* Cards are remembered by a fingerprint, the first 8 bytes of an
+* HMAC-SHA256 of their PAN and expiration date under a key drawn at
+* random for each filter, so no PAN is ever stored and fingerprints mean
+* nothing outside of it. Up to CAPACITY fingerprints are kept in an open
+* addressing table whose entries are also linked from least to most
+* recently seen, the least recent being replaced once the table is full,
+* so each swipe is checked in constant time without allocating.
+*
+* Only used from the reader thread.
+*/
+final class DuplicateFilter {
+
+    // What to do with a duplicate
+    static final int DROP = 0;
+    static final int TAG = 1;
+
+    // Fingerprints kept at most
+    static final int CAPACITY = 32;
+
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+
+    // Slots of the open addressing table, entry index + 1, 0 if free
+    private final int[] table = new int[CAPACITY * 2];
+    private final int mask = table.length - 1;
+
+    // Entries, linked from least (head) to most (tail) recently seen
+    private final long[] fingerprints = new long[CAPACITY];
+    private final long[] seenAt = new long[CAPACITY];
+    private final int[] previous = new int[CAPACITY];
+    private final int[] next = new int[CAPACITY];
+    private int head = -1;
+    private int tail = -1;
+    private int count = 0;
+
+    private final long windowNanos;
+    private final int mode;
+    private final Mac mac;
+
+    // Scratch buffers for the fingerprint, zeroed after each use
+    private final byte[] input = new byte[CardData.MAX_PAN_LENGTH + 4];
+    private final byte[] digest;
+
+    // Duplicates found
+    private long duplicateCount = 0;
+
+    /**
+    * @param windowMillis
+    *        How long after a swipe the same card counts as a duplicate
+    * @param mode
+    *        DROP or TAG
+    */
+    DuplicateFilter(long windowMillis, int mode) throws GeneralSecurityException {
+        this.windowNanos = windowMillis * 1000000L;
+        this.mode = mode;
+
+        byte[] key = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(key);
+        mac = Mac.getInstance(MAC_ALGORITHM);
+        mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+        digest = new byte[mac.getMacLength()];
+    }
+
+    /**
+    * Converts a mode name from JavaScript.
+    *
+    * @param name
+    *        "drop" or "tag"
+    * @return
+    *        Matching mode, or -1 if unknown
+    */
+    static int parseMode(String name) {
+        if ("drop".equals(name)) {
+            return DROP;
+        } else if ("tag".equals(name)) {
+            return TAG;
+        }
+        return -1;
+    }
+
+    int getMode() {
+        return mode;
+    }
+
+    long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+    * Remembers a swipe and tells whether the same card was swiped within
+    * the window before it. A duplicate restarts the window.
+    *
+    * @param card
+    *        Decoded swipe with a PAN
+    * @param time
+    *        When the card data arrived, as System.nanoTime
+    * @return
+    *        True if the swipe is a duplicate
+    */
+    boolean check(CardData card, long time) throws GeneralSecurityException {
+        long fingerprint = fingerprint(card);
+
+        int slot = find(fingerprint);
+        if (slot >= 0) {
+            int entry = table[slot] - 1;
+            boolean duplicate = time - seenAt[entry] <= windowNanos;
+
+            seenAt[entry] = time;
+            unlink(entry);
+            linkLast(entry);
+
+            if (duplicate) {
+                duplicateCount++;
+            }
+            return duplicate;
+        }
+
+        int entry;
+        if (count < CAPACITY) {
+            entry = count++;
+        } else {
+            // Replace the least recently seen card
+            entry = head;
+            remove(find(fingerprints[entry]));
+            unlink(entry);
+        }
+
+        fingerprints[entry] = fingerprint;
+        seenAt[entry] = time;
+        linkLast(entry);
+        insert(entry);
+        return false;
+    }
+
+    /**
+    * Keyed hash of the card's PAN and expiration date.
+    */
+    private long fingerprint(CardData card) throws GeneralSecurityException {
+        try {
+            int length = 0;
+            for (int i = 0; i < card.panLength; i++) {
+                input[length++] = (byte) card.pan[i];
+            }
+            for (int i = 0; i < card.expiry.length; i++) {
+                input[length++] = (byte) card.expiry[i];
+            }
+
+            mac.update(input, 0, length);
+            mac.doFinal(digest, 0);
+
+            long fingerprint = 0;
+            for (int i = 0; i < 8; i++) {
+                fingerprint = fingerprint << 8 | (digest[i] & 0xff);
+            }
+            return fingerprint;
+        } finally {
+            Arrays.fill(input, (byte) 0);
+        }
+    }
+
+    /**
+    * @return
+    *        Table slot holding the fingerprint, or -1 if absent
+    */
+    private int find(long fingerprint) {
+        for (int slot = home(fingerprint); table[slot] != 0; slot = (slot + 1) & mask) {
+            if (fingerprints[table[slot] - 1] == fingerprint) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(int entry) {
+        int slot = home(fingerprints[entry]);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = entry + 1;
+    }
+
+    /**
+    * Frees a table slot, moving later entries of the probe sequence back
+    * so lookups never stop early.
+    */
+    private void remove(int slot) {
+        int free = slot;
+
+        for (int i = (slot + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+            int home = home(fingerprints[table[i] - 1]);
+
+            // Move the entry back unless its home lies cyclically within
+            // (free, i]
+            boolean reachable = free <= i ? home > free && home <= i : home > free || home <= i;
+            if (!reachable) {
+                table[free] = table[i];
+                free = i;
+            }
+        }
+
+        table[free] = 0;
+    }
+
+    private int home(long fingerprint) {
+        return (int) fingerprint & mask;
+    }
+
+    private void linkLast(int entry) {
+        previous[entry] = tail;
+        next[entry] = -1;
+        if (tail >= 0) {
+            next[tail] = entry;
+        } else head = entry;
+        tail = entry;
+    }
+
+    private void unlink(int entry) {
+        if (previous[entry] >= 0) {
+            next[previous[entry]] = next[entry];
+        } else head = next[entry];
+
+        if (next[entry] >= 0) {
+            previous[next[entry]] = previous[entry];
+        } else tail = previous[entry];
+    }
+}
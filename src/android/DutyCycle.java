@@ -0,0 +1,204 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+/**
+* Power schedule of continuous swipe mode, where the reader would
+* otherwise record and decode audio for as long as it is plugged in.
+*
+* The reader starts ACTIVE, armed with the swipe timeout and armed again
+* as soon as it times out. Once nothing happened for the idle delay, it
+* turns IDLE: armed for a short listening window, then left off for a
+* sleep that doubles after each quiet window up to a maximum, or
+* SUSPENDED until the next activity if no maximum was set. Any activity,
+* e.g. a card, a swipe call or a connection, makes it ACTIVE again.
+*
+* Also measures how long the reader was listening for a card and how long
+* it was connected without listening. Times come from System.nanoTime.
+*
+* Only used from the reader thread.
+*/
+final class DutyCycle {
+
+    // Phases of the schedule
+    static final int ACTIVE = 0;
+    static final int IDLE = 1;
+    static final int SUSPENDED = 2;
+
+    // Names of the phases, reported by getMetrics
+    static final String[] PHASE_NAMES = { "active", "idle", "suspended" };
+
+    // Swipe timeout used until configured, in seconds
+    static final int DEFAULT_SWIPE_TIMEOUT = 30;
+
+    private static final long SECOND_NANOS = 1000000000L;
+    private static final long MILLI_NANOS = 1000000L;
+
+    // Settings, an idle delay of 0 keeping the reader active
+    private int swipeTimeoutSeconds = DEFAULT_SWIPE_TIMEOUT;
+    private long idleAfterNanos = 0;
+    private int listenSeconds = 5;
+    private long maxSleepNanos = 0;
+
+    private int phase = ACTIVE;
+    private long lastActivity = System.nanoTime();
+
+    // Sleep before the next listening window while idle
+    private long sleepNanos = 0;
+
+    // Time spent listening and connected without listening, and since
+    // when the current stretch is counted, 0 if neither
+    private long listeningNanos = 0;
+    private long waitingNanos = 0;
+    private long stretchStart = 0;
+    private boolean stretchListening = false;
+
+    // Times the reader went idle and was woken up
+    private long idleCount = 0;
+    private long wakeCount = 0;
+
+    /**
+    * @param seconds
+    *        Time the reader waits for a card while active, at least 1
+    */
+    void setSwipeTimeout(int seconds) {
+        swipeTimeoutSeconds = seconds;
+    }
+
+    int getSwipeTimeoutSeconds() {
+        return swipeTimeoutSeconds;
+    }
+
+    /**
+    * @param idleAfterMillis
+    *        Quiet time after which the reader goes idle, 0 never to
+    * @param listenSeconds
+    *        Length of the listening windows while idle, at least 1
+    * @param maxSleepMillis
+    *        Longest sleep between listening windows, 0 to stop listening
+    *        altogether until there is activity
+    */
+    void configureIdle(long idleAfterMillis, int listenSeconds, long maxSleepMillis) {
+        this.idleAfterNanos = idleAfterMillis * MILLI_NANOS;
+        this.listenSeconds = listenSeconds;
+        this.maxSleepNanos = maxSleepMillis * MILLI_NANOS;
+    }
+
+    int getPhase() {
+        return phase;
+    }
+
+    /**
+    * @return
+    *        Timeout to arm the reader with in the current phase, in
+    *        seconds
+    */
+    int getArmTimeoutSeconds() {
+        return phase == ACTIVE ? swipeTimeoutSeconds : listenSeconds;
+    }
+
+    /**
+    * Records activity, restarting the idle delay.
+    *
+    * @param time
+    *        When it happened
+    * @return
+    *        True if the reader was idle or suspended and is active again
+    */
+    boolean recordActivity(long time) {
+        lastActivity = time;
+
+        if (phase == ACTIVE) {
+            return false;
+        }
+
+        phase = ACTIVE;
+        wakeCount++;
+        return true;
+    }
+
+    /**
+    * Decides when to listen again after the reader timed out with no card.
+    *
+    * @param time
+    *        When the timeout was received
+    * @return
+    *        Nanoseconds to wait before arming the reader again, 0 for
+    *        right away or -1 to wait for activity
+    */
+    long onQuietTimeout(long time) {
+        if (phase == ACTIVE) {
+            if (idleAfterNanos == 0 || time - lastActivity < idleAfterNanos) {
+                return 0;
+            }
+
+            idleCount++;
+            if (maxSleepNanos == 0) {
+                phase = SUSPENDED;
+                return -1;
+            }
+
+            phase = IDLE;
+            sleepNanos = Math.min(listenSeconds * SECOND_NANOS, maxSleepNanos);
+            return sleepNanos;
+        }
+
+        if (phase == IDLE) {
+            sleepNanos = Math.min(sleepNanos * 2, maxSleepNanos);
+            return sleepNanos;
+        }
+
+        return -1;
+    }
+
+    /**
+    * Counts the time of the stretch ending now towards listening or
+    * waiting, and starts the next one.
+    *
+    * @param listening
+    *        Whether the reader now waits for a card
+    * @param connected
+    *        Whether the reader is now connected
+    * @param time
+    *        When the reader changed
+    */
+    void recordReaderState(boolean listening, boolean connected, long time) {
+        closeStretch(time);
+
+        stretchStart = connected ? time : 0;
+        stretchListening = listening;
+    }
+
+    /**
+    * @return
+    *        Time spent listening for a card up to now, in nanoseconds
+    */
+    long getListeningNanos(long now) {
+        return listeningNanos + (stretchStart != 0 && stretchListening ? now - stretchStart : 0);
+    }
+
+    /**
+    * @return
+    *        Time spent connected without listening up to now, in
+    *        nanoseconds
+    */
+    long getWaitingNanos(long now) {
+        return waitingNanos + (stretchStart != 0 && !stretchListening ? now - stretchStart : 0);
+    }
+
+    long getIdleCount() {
+        return idleCount;
+    }
+
+    long getWakeCount() {
+        return wakeCount;
+    }
+
+    private void closeStretch(long time) {
+        if (stretchStart == 0) {
+            return;
+        }
+
+        if (stretchListening) {
+            listeningNanos += time - stretchStart;
+        } else waitingNanos += time - stretchStart;
+    }
+}
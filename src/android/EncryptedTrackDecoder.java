@@ -0,0 +1,281 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+/**
+* Single pass decoder for the frame an encrypting reader head sends
+* instead of ASCII tracks, which the SDK signals with ENCRYPTED_FLAG in
+* flagOfCardData. The frame follows ID TECH's enhanced encrypted MSR
+* format:
+*
+*   STX, data length (2 bytes, LSB first),
+*   card encode type, track status, track 1-3 lengths,
+*   masked data status, encrypted data status,
+*   masked tracks 1-3, encrypted tracks 1-3, session ID,
+*   track 1-3 hashes, KSN,
+*   LRC, checksum, ETX
+*
+* Bytes are copied into the card's EncryptedTracks as they are read while
+* the LRC and checksum are computed, and fields are located from the
+* header once it has been read. The masked tracks are then parsed like
+* ASCII tracks for the name, expiration date and masked PAN.
+*
+* The frame does not say whether tracks were encrypted with TDES or AES,
+* so the block size is the one the encrypted lengths add up with.
+*
+* An instance keeps a scratch frame, zeroed after each call, and must only
+* be used from one thread at a time.
+*/
+final class EncryptedTrackDecoder {
+
+    // Bit of flagOfCardData set for encrypted frames
+    static final int ENCRYPTED_FLAG = 0x04;
+
+    // Frame delimiters
+    private static final int STX = 0x02;
+    private static final int ETX = 0x03;
+
+    // Decoder states
+    private static final int START = 0;
+    private static final int LENGTH_LOW = 1;
+    private static final int LENGTH_HIGH = 2;
+    private static final int DATA = 3;
+    private static final int LRC = 4;
+    private static final int CHECKSUM = 5;
+    private static final int END = 6;
+    private static final int DONE = 7;
+
+    // Positions of the header fields within the frame
+    private static final int CARD_TYPE = 3;
+    private static final int TRACK_STATUS = 4;
+    private static final int TRACK_LENGTHS = 5;
+    private static final int MASKED_STATUS = 8;
+    private static final int ENCRYPTED_STATUS = 9;
+    private static final int BODY = 10;
+
+    // Bits of the encrypted data status beyond the track 1-3 bits
+    private static final int HASH_SHIFT = 3;
+    private static final int SESSION_ID_PRESENT = 0x40;
+    private static final int KSN_PRESENT = 0x80;
+
+    // Fixed field lengths
+    private static final int HASH_LENGTH = 20;
+    private static final int SESSION_ID_LENGTH = 8;
+    private static final int KSN_LENGTH = 10;
+
+    // Order of the fields following the header
+    private static final int[] FIELD_ORDER = {
+        EncryptedTracks.MASKED_TRACK1,
+        EncryptedTracks.MASKED_TRACK2,
+        EncryptedTracks.MASKED_TRACK3,
+        EncryptedTracks.ENCRYPTED_TRACK1,
+        EncryptedTracks.ENCRYPTED_TRACK2,
+        EncryptedTracks.ENCRYPTED_TRACK3,
+        EncryptedTracks.SESSION_ID,
+        EncryptedTracks.HASH_TRACK1,
+        EncryptedTracks.HASH_TRACK2,
+        EncryptedTracks.HASH_TRACK3,
+        EncryptedTracks.KSN
+    };
+
+    // Cipher block sizes of TDES and AES
+    private static final int[] BLOCK_SIZES = { 8, 16 };
+
+    private final CardParser parser;
+
+    // Frame being decoded, copied into the card once complete
+    private final EncryptedTracks scratch = new EncryptedTracks();
+
+    /**
+    * @param parser
+    *        Parses the masked tracks
+    */
+    EncryptedTrackDecoder(CardParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+    * Decodes an encrypted frame.
+    *
+    * @param data
+    *        Card data from the SDK, flag byte excluded
+    * @param out
+    *        Receives the masked track fields and the frame, reset first
+    * @return
+    *        True if the frame was well formed and carried card data
+    */
+    boolean decode(byte[] data, CardData out) {
+        try {
+            if (!readFrame(data)) {
+                out.reset();
+                return false;
+            }
+
+            int maskedLength = scratch.lengths[EncryptedTracks.MASKED_TRACK1]
+                    + scratch.lengths[EncryptedTracks.MASKED_TRACK2]
+                    + scratch.lengths[EncryptedTracks.MASKED_TRACK3];
+
+            // Masked tracks follow each other, so they parse as one swipe
+            boolean parsed = parser.parseMasked(scratch.frame, scratch.offsets[EncryptedTracks.MASKED_TRACK1],
+                                                maskedLength, out);
+
+            out.encrypted.copyFrom(scratch);
+
+            // Encrypted financial tracks are enough if masking hid the
+            // fields the parser needs
+            return parsed || scratch.lengths[EncryptedTracks.ENCRYPTED_TRACK1] > 0
+                    || scratch.lengths[EncryptedTracks.ENCRYPTED_TRACK2] > 0;
+        } finally {
+            scratch.wipe();
+        }
+    }
+
+    /**
+    * Copies and checks the frame into scratch in one pass.
+    */
+    private boolean readFrame(byte[] data) {
+        scratch.reset();
+        scratch.ensureCapacity(data.length);
+
+        int state = START;
+        int dataEnd = 0;
+        int lrc = 0;
+        int sum = 0;
+
+        for (int i = 0; i < data.length && state != DONE; i++) {
+            int b = data[i] & 0xff;
+            scratch.frame[scratch.frameLength++] = (byte) b;
+
+            switch (state) {
+                case START:
+                    if (b != STX) {
+                        return false;
+                    }
+                    state = LENGTH_LOW;
+                    break;
+                case LENGTH_LOW:
+                    dataEnd = b;
+                    state = LENGTH_HIGH;
+                    break;
+                case LENGTH_HIGH:
+                    dataEnd = CARD_TYPE + (dataEnd | b << 8);
+                    if (dataEnd < BODY) {
+                        return false;
+                    }
+                    state = DATA;
+                    break;
+                case DATA:
+                    lrc ^= b;
+                    sum += b;
+                    if (i == ENCRYPTED_STATUS && !locateFields(dataEnd)) {
+                        return false;
+                    }
+                    if (i == dataEnd - 1) {
+                        state = LRC;
+                    }
+                    break;
+                case LRC:
+                    if (b != lrc) {
+                        return false;
+                    }
+                    state = CHECKSUM;
+                    break;
+                case CHECKSUM:
+                    if (b != (sum & 0xff)) {
+                        return false;
+                    }
+                    state = END;
+                    break;
+                default:
+                    if (b != ETX) {
+                        return false;
+                    }
+                    state = DONE;
+                    break;
+            }
+        }
+
+        scratch.present = state == DONE;
+        return scratch.present;
+    }
+
+    /**
+    * Works out where each field lies from the header just read.
+    *
+    * @param dataEnd
+    *        Index of the byte following the data, i.e. the LRC
+    * @return
+    *        False if the fields do not add up to the data length
+    */
+    private boolean locateFields(int dataEnd) {
+        byte[] frame = scratch.frame;
+        int maskedStatus = frame[MASKED_STATUS];
+        int encryptedStatus = frame[ENCRYPTED_STATUS] & 0xff;
+
+        scratch.cardType = frame[CARD_TYPE] & 0xff;
+        scratch.trackStatus = frame[TRACK_STATUS] & 0xff;
+
+        // Lengths of everything but the encrypted tracks
+        int fixedLength = 0;
+        for (int track = 0; track < 3; track++) {
+            if ((maskedStatus & 1 << track) != 0) {
+                scratch.lengths[EncryptedTracks.MASKED_TRACK1 + track] = frame[TRACK_LENGTHS + track] & 0xff;
+                fixedLength += frame[TRACK_LENGTHS + track] & 0xff;
+            }
+            if ((encryptedStatus & 1 << (HASH_SHIFT + track)) != 0) {
+                scratch.lengths[EncryptedTracks.HASH_TRACK1 + track] = HASH_LENGTH;
+                fixedLength += HASH_LENGTH;
+            }
+        }
+        if ((encryptedStatus & SESSION_ID_PRESENT) != 0) {
+            scratch.lengths[EncryptedTracks.SESSION_ID] = SESSION_ID_LENGTH;
+            fixedLength += SESSION_ID_LENGTH;
+        }
+        if ((encryptedStatus & KSN_PRESENT) != 0) {
+            scratch.lengths[EncryptedTracks.KSN] = KSN_LENGTH;
+            fixedLength += KSN_LENGTH;
+        }
+
+        int encryptedLength = dataEnd - BODY - fixedLength;
+        if (!sizeEncryptedTracks(encryptedStatus, encryptedLength)) {
+            return false;
+        }
+
+        int offset = BODY;
+        for (int field : FIELD_ORDER) {
+            scratch.offsets[field] = offset;
+            offset += scratch.lengths[field];
+        }
+
+        return true;
+    }
+
+    /**
+    * Sets the lengths of the encrypted tracks, each track length rounded
+    * up to the cipher block size their total matches.
+    */
+    private boolean sizeEncryptedTracks(int encryptedStatus, int encryptedLength) {
+        for (int blockSize : BLOCK_SIZES) {
+            int total = 0;
+            for (int track = 0; track < 3; track++) {
+                if ((encryptedStatus & 1 << track) != 0) {
+                    total += roundUp(scratch.frame[TRACK_LENGTHS + track] & 0xff, blockSize);
+                }
+            }
+
+            if (total == encryptedLength) {
+                for (int track = 0; track < 3; track++) {
+                    if ((encryptedStatus & 1 << track) != 0) {
+                        scratch.lengths[EncryptedTracks.ENCRYPTED_TRACK1 + track] =
+                                roundUp(scratch.frame[TRACK_LENGTHS + track] & 0xff, blockSize);
+                    }
+                }
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int roundUp(int length, int blockSize) {
+        return (length + blockSize - 1) / blockSize * blockSize;
+    }
+}
@@ -0,0 +1,120 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.util.Arrays;
+
+/**
+* Reusable holder for the frame sent by an encrypting reader head. The
+* frame is kept as bytes and each field is only located within it, so
+* encrypted blocks, hashes and the KSN stay binary and are only turned
+* into hex when written into the event. Like CardData, the buffer is
+* reused for every swipe and zeroed by wipe.
+*/
+final class EncryptedTracks {
+
+    // Fields of the frame, indexes into offsets and lengths
+    static final int MASKED_TRACK1 = 0;
+    static final int MASKED_TRACK2 = 1;
+    static final int MASKED_TRACK3 = 2;
+    static final int ENCRYPTED_TRACK1 = 3;
+    static final int ENCRYPTED_TRACK2 = 4;
+    static final int ENCRYPTED_TRACK3 = 5;
+    static final int HASH_TRACK1 = 6;
+    static final int HASH_TRACK2 = 7;
+    static final int HASH_TRACK3 = 8;
+    static final int SESSION_ID = 9;
+    static final int KSN = 10;
+    static final int FIELD_COUNT = 11;
+
+    // Names of the fields in card data sent to JavaScript
+    static final String[] FIELD_NAMES = {
+        "masked_track1",
+        "masked_track2",
+        "masked_track3",
+        "track1_encrypted",
+        "track2_encrypted",
+        "track3_encrypted",
+        "track1_hash",
+        "track2_hash",
+        "track3_hash",
+        "session_id",
+        "ksn"
+    };
+
+    // True if the swipe came from an encrypting head
+    boolean present;
+
+    // Card encode type and track status bytes of the frame
+    int cardType;
+    int trackStatus;
+
+    // Frame as received, STX to ETX, grown only when a longer one arrives
+    byte[] frame = new byte[512];
+    int frameLength;
+
+    // Position of each field within the frame, length 0 if absent
+    final int[] offsets = new int[FIELD_COUNT];
+    final int[] lengths = new int[FIELD_COUNT];
+
+    /**
+    * Clears all fields before a new swipe is decoded.
+    */
+    void reset() {
+        present = false;
+        cardType = 0;
+        trackStatus = 0;
+        frameLength = 0;
+        Arrays.fill(offsets, 0);
+        Arrays.fill(lengths, 0);
+    }
+
+    /**
+    * Zeroes the frame and clears all fields.
+    */
+    void wipe() {
+        Arrays.fill(frame, 0, frameLength, (byte) 0);
+        reset();
+    }
+
+    /**
+    * Makes room for a frame, zeroing the buffer it replaces.
+    *
+    * @param capacity
+    *        Bytes the buffer must hold at least
+    */
+    void ensureCapacity(int capacity) {
+        if (frame.length < capacity) {
+            byte[] grown = new byte[Math.max(capacity, frame.length * 2)];
+            System.arraycopy(frame, 0, grown, 0, frameLength);
+            Arrays.fill(frame, (byte) 0);
+            frame = grown;
+        }
+    }
+
+    /**
+    * Copies all fields of another frame, zeroing what remains of a longer
+    * one.
+    *
+    * @param other
+    *        Frame to copy
+    */
+    void copyFrom(EncryptedTracks other) {
+        ensureCapacity(other.frameLength);
+        System.arraycopy(other.frame, 0, frame, 0, other.frameLength);
+        if (frameLength > other.frameLength) {
+            Arrays.fill(frame, other.frameLength, frameLength, (byte) 0);
+        }
+        frameLength = other.frameLength;
+        present = other.present;
+        cardType = other.cardType;
+        trackStatus = other.trackStatus;
+        System.arraycopy(other.offsets, 0, offsets, 0, FIELD_COUNT);
+        System.arraycopy(other.lengths, 0, lengths, 0, FIELD_COUNT);
+    }
+
+    /**
+    * Whether a field is made of track characters rather than binary data.
+    */
+    static boolean isText(int field) {
+        return field <= MASKED_TRACK3;
+    }
+}
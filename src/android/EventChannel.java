@@ -0,0 +1,241 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+* Long-lived channel carrying plugin events to JavaScript. Events posted
+* within a short window are batched into a single delivery, a JSON array
+* of {"event": ..., "data": ...} messages, so the WebView handles one
+* callback instead of evaluating a new script per event.
+*
+* The batch buffer is zeroed once its messages were sent or dropped, as it
+* may hold card data.
+*/
+final class EventChannel {
+
+    /**
+    * Destination of batches, e.g. a kept Cordova callback.
+    */
+    interface Sink {
+        /**
+        * @param messages
+        *        JSON array of event messages
+        */
+        void send(String messages);
+    }
+
+    /**
+    * Event data able to write itself into a pending batch.
+    */
+    interface Payload {
+        /**
+        * @param json
+        *        Buffer to append the data's JSON value to
+        */
+        void appendTo(StringBuilder json);
+    }
+
+    // Window during which events are batched, in milliseconds
+    static final long COALESCE_WINDOW_MS = 4;
+
+    // Schedules deliveries off the threads firing events
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+    // Batch being built for the next delivery, opened with '['
+    private final StringBuilder pending = new StringBuilder(1024).append('[');
+
+    // Where batches go, null while JavaScript has not registered
+    private Sink sink;
+
+    // Indicates if a delivery has been scheduled for pending messages
+    private boolean flushScheduled = false;
+
+    // Records how long stamped messages took to be sent, null if unused
+    private LatencyHistogram deliveryLatency;
+
+    // Stamps of messages in the pending batch, swapped with those of the
+    // batch being sent; stamps beyond the first few of a batch are ignored
+    private long[] pendingStamps = new long[32];
+    private long[] sendingStamps = new long[32];
+    private int pendingStampCount = 0;
+
+    // Delivers pending messages
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+    * Connect or disconnect the JavaScript side.
+    *
+    * @param sink
+    *        Destination of batches, or null to drop pending messages
+    */
+    synchronized void setSink(Sink sink) {
+        this.sink = sink;
+        if (sink == null) {
+            wipePending();
+            pendingStampCount = 0;
+        }
+    }
+
+    /**
+    * Measure the delivery of messages posted with a stamp.
+    *
+    * @param histogram
+    *        Receives the time from stamp to the batch being sent
+    */
+    synchronized void setDeliveryLatency(LatencyHistogram histogram) {
+        deliveryLatency = histogram;
+    }
+
+    /**
+    * @return
+    *        True if JavaScript has registered to receive events
+    */
+    synchronized boolean isOpen() {
+        return sink != null;
+    }
+
+    /**
+    * Queue an event for the next delivery.
+    *
+    * @param event
+    *        The event name
+    * @param data
+    *        Details about the event, may be null
+    * @return
+    *        False if the channel is not open and the event was not queued
+    */
+    synchronized boolean post(String event, String data) {
+        if (sink == null) {
+            return false;
+        }
+
+        startMessage();
+        EventEncoder.appendMessage(pending, event, data);
+        scheduleFlush();
+        return true;
+    }
+
+    /**
+    * Queue an event whose data is written straight into the batch.
+    *
+    * @param event
+    *        The event name
+    * @param data
+    *        Writes details about the event
+    * @return
+    *        False if the channel is not open and the event was not queued
+    */
+    synchronized boolean post(String event, Payload data) {
+        if (sink == null) {
+            return false;
+        }
+
+        startMessage();
+        EventEncoder.appendMessage(pending, event, data);
+        scheduleFlush();
+        return true;
+    }
+
+    /**
+    * Queue an event whose data is written straight into the batch, and
+    * measure how long it takes to be sent.
+    *
+    * @param event
+    *        The event name
+    * @param data
+    *        Writes details about the event
+    * @param stamp
+    *        System.nanoTime the delivery latency is measured from
+    * @return
+    *        False if the channel is not open and the event was not queued
+    */
+    synchronized boolean post(String event, Payload data, long stamp) {
+        if (!post(event, data)) {
+            return false;
+        }
+
+        if (pendingStampCount < pendingStamps.length) {
+            pendingStamps[pendingStampCount++] = stamp;
+        }
+        return true;
+    }
+
+    private void startMessage() {
+        if (pending.length() > 1) {
+            pending.append(',');
+        }
+    }
+
+    /**
+    * Empties the pending batch, zeroing the characters it held.
+    */
+    private void wipePending() {
+        int length = pending.length();
+
+        // Growing the length again fills the buffer with '\0'
+        pending.setLength(1);
+        pending.setLength(length);
+        pending.setLength(1);
+    }
+
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(flushTask, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+    * Deliver pending messages now.
+    */
+    void flush() {
+        Sink target;
+        String messages;
+        LatencyHistogram latency;
+        long[] stamps;
+        int stampCount;
+
+        synchronized (this) {
+            flushScheduled = false;
+            if (sink == null || pending.length() == 1) {
+                return;
+            }
+
+            target = sink;
+            messages = pending.append(']').toString();
+            wipePending();
+
+            latency = deliveryLatency;
+            stamps = pendingStamps;
+            stampCount = pendingStampCount;
+            pendingStamps = sendingStamps;
+            sendingStamps = stamps;
+            pendingStampCount = 0;
+        }
+
+        // Sent outside the lock so events keep queueing meanwhile
+        target.send(messages);
+
+        if (latency != null) {
+            long now = System.nanoTime();
+            for (int i = 0; i < stampCount; i++) {
+                latency.record(now - stamps[i]);
+            }
+        }
+    }
+
+    /**
+    * Stop scheduling deliveries, pending messages are dropped.
+    */
+    void shutdown() {
+        setSink(null);
+        scheduler.shutdownNow();
+    }
+}
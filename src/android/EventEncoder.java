@@ -0,0 +1,142 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+/**
+* Formats plugin events for the WebView, either as JavaScript to evaluate
+* or as JSON messages for the event channel.
+*/
+final class EventEncoder {
+
+    // Function receiving events on the JavaScript side
+    private static final String DISPATCH = "cordova.plugins.unimag.swiper.fireEvent('";
+
+    private EventEncoder() {}
+
+    /**
+    * Format an event as a call to the JavaScript interface.
+    *
+    * @param event
+    *        The event name
+    * @param data
+    *        Details about the event, may be null
+    * @return
+    *        JavaScript statement to evaluate
+    */
+    static String toJavascript(String event, String data) {
+        int length = DISPATCH.length() + event.length() + 3 + (data != null ? data.length() + 3 : 0);
+        StringBuilder js = new StringBuilder(length + 16);
+
+        js.append(DISPATCH);
+        appendEscaped(js, event);
+        if (data != null) {
+            js.append("','");
+            appendEscaped(js, data);
+        }
+        js.append("');");
+
+        return js.toString();
+    }
+
+    /**
+    * Append an event as a JSON message: {"event": ..., "data": ...}.
+    *
+    * @param json
+    *        Buffer to append to
+    * @param event
+    *        The event name
+    * @param data
+    *        Details about the event, omitted if null
+    */
+    static void appendMessage(StringBuilder json, String event, String data) {
+        json.append("{\"event\":");
+        appendJsonString(json, event);
+        if (data != null) {
+            json.append(",\"data\":");
+            appendJsonString(json, data);
+        }
+        json.append('}');
+    }
+
+    /**
+    * Append an event as a JSON message whose data writes itself.
+    *
+    * @param json
+    *        Buffer to append to
+    * @param event
+    *        The event name
+    * @param data
+    *        Writes details about the event
+    */
+    static void appendMessage(StringBuilder json, String event, EventChannel.Payload data) {
+        json.append("{\"event\":");
+        appendJsonString(json, event);
+        json.append(",\"data\":");
+        data.appendTo(json);
+        json.append('}');
+    }
+
+    /**
+    * Append a value as a quoted JSON string.
+    */
+    static void appendJsonString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                case '\\':
+                    json.append('\\').append(c);
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        appendUnicodeEscape(json, c);
+                    } else json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+    * Append a value so it can be embedded in a single quoted JavaScript
+    * string literal, e.g. a cardholder name such as O'BRIEN.
+    */
+    static void appendEscaped(StringBuilder js, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\'':
+                case '\\':
+                    js.append('\\').append(c);
+                    break;
+                case '\n':
+                    js.append("\\n");
+                    break;
+                case '\r':
+                    js.append("\\r");
+                    break;
+                case '\u2028':
+                case '\u2029':
+                    js.append("\\u").append(Integer.toHexString(c));
+                    break;
+                default:
+                    if (c < 0x20) {
+                        appendUnicodeEscape(js, c);
+                    } else js.append(c);
+            }
+        }
+    }
+
+    private static void appendUnicodeEscape(StringBuilder out, char c) {
+        out.append("\\u00");
+        out.append(Character.forDigit(c >> 4, 16));
+        out.append(Character.forDigit(c & 0xf, 16));
+    }
+}
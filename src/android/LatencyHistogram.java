@@ -0,0 +1,111 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+* Fixed-bucket histogram of latencies measured with System.nanoTime.
+* Buckets are spaced logarithmically, four per power of two microseconds,
+* so percentiles are reported within 25% of the real value while
+* recording is a few arithmetic operations and an atomic increment.
+*
+* Safe to record into from several threads.
+*/
+final class LatencyHistogram {
+
+    // Sub-buckets per power of two
+    private static final int SUB_BUCKETS = 4;
+
+    // Powers of two covered, up to about 71 minutes in microseconds
+    private static final int OCTAVES = 32;
+
+    // Bucket 0 holds anything under a microsecond
+    private static final int BUCKET_COUNT = 1 + OCTAVES * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+    * Records a latency.
+    *
+    * @param nanos
+    *        Difference of two System.nanoTime values
+    */
+    void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+
+        buckets.incrementAndGet(bucketOf(nanos / 1000));
+        count.incrementAndGet();
+
+        long max;
+        do {
+            max = maxNanos.get();
+        } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+    }
+
+    long getCount() {
+        return count.get();
+    }
+
+    double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+    * Estimates a percentile as the upper bound of the bucket it falls in,
+    * capped by the largest latency recorded.
+    *
+    * @param percentile
+    *        Percentile between 0 and 100
+    * @return
+    *        Latency in milliseconds, 0 if nothing was recorded
+    */
+    double getPercentileMillis(double percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundMicros(i) / 1e3, getMaxMillis());
+            }
+        }
+
+        return getMaxMillis();
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < 1) {
+            return 0;
+        }
+
+        int octave = 63 - Long.numberOfLeadingZeros(micros);
+        if (octave >= OCTAVES) {
+            return BUCKET_COUNT - 1;
+        }
+
+        // Two bits following the leading one pick the sub-bucket
+        int sub = octave >= 2 ? (int) (micros >> (octave - 2)) & 3 : (int) (micros << (2 - octave)) & 3;
+
+        return 1 + octave * SUB_BUCKETS + sub;
+    }
+
+    private static double upperBoundMicros(int bucket) {
+        if (bucket == 0) {
+            return 1;
+        }
+
+        int octave = (bucket - 1) / SUB_BUCKETS;
+        int sub = (bucket - 1) % SUB_BUCKETS;
+
+        return Math.pow(2, octave) * (1 + (sub + 1) / (double) SUB_BUCKETS);
+    }
+}
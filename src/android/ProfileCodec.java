@@ -0,0 +1,115 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import IDTech.MSR.XMLManager.StructConfigParameters;
+
+/**
+* Converts the settings of an Auto Config profile to and from a flat array
+* of ints, the form in which profiles are persisted.
+*/
+final class ProfileCodec {
+
+    // Positions of the settings within the array
+    static final int DIRECTION_OUTPUT_WAVE = 0;
+    static final int FREQUENCE_INPUT = 1;
+    static final int FREQUENCE_OUTPUT = 2;
+    static final int RECORD_BUFFER_SIZE = 3;
+    static final int RECORD_READ_BUFFER_SIZE = 4;
+    static final int WAVE_DIRECTION = 5;
+    static final int HIGH_THRESHOLD = 6;
+    static final int LOW_THRESHOLD = 7;
+    static final int MIN = 8;
+    static final int MAX = 9;
+    static final int BAUD_RATE = 10;
+    static final int PRE_AMBLE_FACTOR = 11;
+    static final int SHUTTLE_CHANNEL = 12;
+    static final int FORCE_HEADSET_PLUG = 13;
+    static final int USE_VOICE_RECOGNITION = 14;
+    static final int VOLUME_LEVEL_ADJUST = 15;
+
+    // Number of settings in a profile
+    static final int FIELD_COUNT = 16;
+
+    // Names the settings are stored under, in array order
+    static final String[] KEYS = {
+        "direction_output_wave",
+        "frequence_input",
+        "frequence_output",
+        "record_buffer_size",
+        "record_read_buffer_size",
+        "wave_direction",
+        "high_threshold",
+        "low_threshold",
+        "min",
+        "max",
+        "baud_rate",
+        "pre_amble_factor",
+        "shuttle_channel",
+        "force_headset_plug",
+        "use_voice_recognition",
+        "volume_level_adjust"
+    };
+
+    private ProfileCodec() {}
+
+    /**
+    * Flattens a profile.
+    *
+    * @param profile
+    *        Profile from Auto Config
+    * @return
+    *        Its settings, indexed by the constants above
+    */
+    static int[] toFields(StructConfigParameters profile) {
+        int[] fields = new int[FIELD_COUNT];
+
+        fields[DIRECTION_OUTPUT_WAVE] = profile.getDirectionOutputWave();
+        fields[FREQUENCE_INPUT] = profile.getFrequenceInput();
+        fields[FREQUENCE_OUTPUT] = profile.getFrequenceOutput();
+        fields[RECORD_BUFFER_SIZE] = profile.getRecordBufferSize();
+        fields[RECORD_READ_BUFFER_SIZE] = profile.getRecordReadBufferSize();
+        fields[WAVE_DIRECTION] = profile.getWaveDirection();
+        fields[HIGH_THRESHOLD] = profile.gethighThreshold();
+        fields[LOW_THRESHOLD] = profile.getlowThreshold();
+        fields[MIN] = profile.getMin();
+        fields[MAX] = profile.getMax();
+        fields[BAUD_RATE] = profile.getBaudRate();
+        fields[PRE_AMBLE_FACTOR] = profile.getPreAmbleFactor();
+        fields[SHUTTLE_CHANNEL] = profile.getShuttleChannel() & 0xff;
+        fields[FORCE_HEADSET_PLUG] = profile.getForceHeadsetPlug();
+        fields[USE_VOICE_RECOGNITION] = profile.getUseVoiceRecognition();
+        fields[VOLUME_LEVEL_ADJUST] = profile.getVolumeLevelAdjust();
+
+        return fields;
+    }
+
+    /**
+    * Rebuilds a profile from its flattened settings.
+    *
+    * @param fields
+    *        Settings, indexed by the constants above
+    * @return
+    *        Profile to connect with
+    */
+    static StructConfigParameters fromFields(int[] fields) {
+        StructConfigParameters profile = new StructConfigParameters();
+
+        profile.setDirectionOutputWave((short) fields[DIRECTION_OUTPUT_WAVE]);
+        profile.setFrequenceInput(fields[FREQUENCE_INPUT]);
+        profile.setFrequenceOutput(fields[FREQUENCE_OUTPUT]);
+        profile.setRecordBufferSize(fields[RECORD_BUFFER_SIZE]);
+        profile.setRecordReadBufferSize(fields[RECORD_READ_BUFFER_SIZE]);
+        profile.setWaveDirection(fields[WAVE_DIRECTION]);
+        profile.sethighThreshold((short) fields[HIGH_THRESHOLD]);
+        profile.setlowThreshold((short) fields[LOW_THRESHOLD]);
+        profile.setMin((short) fields[MIN]);
+        profile.setMax((short) fields[MAX]);
+        profile.setBaudRate(fields[BAUD_RATE]);
+        profile.setPreAmbleFactor((short) fields[PRE_AMBLE_FACTOR]);
+        profile.setShuttleChannel((byte) fields[SHUTTLE_CHANNEL]);
+        profile.setForceHeadsetPlug((short) fields[FORCE_HEADSET_PLUG]);
+        profile.setUseVoiceRecognition((short) fields[USE_VOICE_RECOGNITION]);
+        profile.setVolumeLevelAdjust((short) fields[VOLUME_LEVEL_ADJUST]);
+
+        return profile;
+    }
+}
@@ -0,0 +1,470 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+/**
+* Compact, sorted index of the device profiles listed in the SDK's XML
+* configuration file. Entries are keyed by a 64-bit hash of manufacturer
+* and model so a profile can be found with a single binary search instead
+* of the SDK parsing the whole XML file on every connection.
+*
+* Only plain entries are indexed. Anything the SDK resolves with extra
+* rules (OS version dependent settings, voice recognition or special model
+* overrides) is left out so that a lookup miss falls back to the SDK's own
+* XML loading. Support is recorded per reader type, so a lookup for a
+* reader type the entry does not list as fully supported misses too, and
+* a lookup with no reader type set misses unless every type it lists is.
+*/
+final class ProfileIndex {
+
+    // Slots of an entry, slot 0 holds a bit mask of the fields present
+    static final int DIRECTION_OUTPUT_WAVE = 1;
+    static final int FREQUENCE_INPUT = 2;
+    static final int FREQUENCE_OUTPUT = 3;
+    static final int BAUD_RATE = 4;
+    static final int RECORD_BUFFER_SIZE = 5;
+    static final int RECORD_READ_BUFFER_SIZE = 6;
+    static final int POWERUP_LAST_BEFORE_CMD = 7;
+    static final int VOLUME_LEVEL_ADJUST = 8;
+    static final int FORCE_HEADSET_PLUG = 9;
+    static final int USE_VOICE_RECOGNITION = 10;
+
+    // Slots holding bit masks of the READER_CODES an entry's
+    // support_status lists, and of those it lists as fully supported
+    static final int LISTED_READERS = 11;
+    static final int SUPPORTED_READERS = 12;
+
+    // Number of int slots used by every entry
+    static final int ENTRY_SIZE = 13;
+
+    // Reader types as named in support_status, e.g. "ump=s;um2=s"
+    private static final String[] READER_CODES = { "um2g", "ump", "um2", "um2i", "shuttle", "unipay" };
+
+    // Bit in the reader masks standing for codes not in READER_CODES
+    private static final int OTHER_READERS = READER_CODES.length;
+
+    // XML tag names matching the slots above
+    private static final String[] FIELD_TAGS = {
+        null,
+        "directionOutputWave",
+        "InputFreq",
+        "OutputFreq",
+        "baudRate",
+        "RecBuffSize",
+        "ReadRecBuffSize",
+        "powerupLastBeforeCMD",
+        "volumeLevelAdjust",
+        "force_headset_plug",
+        "useVoiceRecognition"
+    };
+
+    // Identifies an index file and its layout
+    private static final int MAGIC = 0x554d5049; // "UMPI"
+    private static final int FORMAT_VERSION = 3;
+
+    // Identifies the XML content the index was compiled from
+    private final long sourceStamp;
+
+    // Sorted manufacturer/model hashes
+    private final long[] keys;
+
+    // ENTRY_SIZE slots per key, in key order
+    private final int[] entries;
+
+    private ProfileIndex(long sourceStamp, long[] keys, int[] entries) {
+        this.sourceStamp = sourceStamp;
+        this.keys = keys;
+        this.entries = entries;
+    }
+
+    /**
+    * Number of profiles in the index.
+    */
+    int size() {
+        return keys.length;
+    }
+
+    /**
+    * Finds the profile for a device and reader type.
+    *
+    * @param manufacturer
+    *        Device manufacturer, as in Build.MANUFACTURER
+    * @param model
+    *        Device model, as in Build.MODEL
+    * @param readerCode
+    *        Reader type as named in support_status, e.g. "ump", null if
+    *        no reader type is set
+    * @return
+    *        Copy of the entry's slots, or null if the device is not
+    *        indexed or the reader type not listed as fully supported on
+    *        it; with no reader type, null unless every type listed is
+    */
+    int[] lookup(String manufacturer, String model, String readerCode) {
+        int reader = readerCode == null ? -1 : indexOf(readerCode);
+        if (readerCode != null && reader < 0) {
+            return null;
+        }
+
+        int i = Arrays.binarySearch(keys, key(normalize(manufacturer), normalize(model)));
+        if (i < 0) {
+            return null;
+        }
+
+        int listed = entries[i * ENTRY_SIZE + LISTED_READERS];
+        int supported = entries[i * ENTRY_SIZE + SUPPORTED_READERS];
+        if (reader < 0 ? listed == 0 || listed != supported : (supported & (1 << reader)) == 0) {
+            return null;
+        }
+
+        int[] entry = new int[ENTRY_SIZE];
+        System.arraycopy(entries, i * ENTRY_SIZE, entry, 0, ENTRY_SIZE);
+        return entry;
+    }
+
+    /**
+    * Checks whether a field was present in the XML for an entry.
+    *
+    * @param entry
+    *        Entry returned by lookup
+    * @param field
+    *        Slot of the field
+    * @return
+    *        True if the field should be applied
+    */
+    static boolean has(int[] entry, int field) {
+        return (entry[0] & (1 << field)) != 0;
+    }
+
+    /**
+    * Reads an index file written by write().
+    *
+    * @param file
+    *        Index file
+    * @param expectedStamp
+    *        Stamp of the XML content currently bundled
+    * @param log
+    *        Receives read failures
+    * @return
+    *        The index, or null if missing, corrupt or compiled from
+    *        different XML content
+    */
+    static ProfileIndex read(File file, long expectedStamp, DiagnosticLog log) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            long stamp = in.readLong();
+            if (stamp != expectedStamp) {
+                return null;
+            }
+
+            int count = in.readInt();
+            long[] keys = new long[count];
+            int[] entries = new int[count * ENTRY_SIZE];
+
+            for (int i = 0; i < count; i++) {
+                keys[i] = in.readLong();
+                for (int j = 0; j < ENTRY_SIZE; j++) {
+                    entries[i * ENTRY_SIZE + j] = in.readInt();
+                }
+            }
+
+            return new ProfileIndex(stamp, keys, entries);
+        } catch (IOException e) {
+            log.recordError(e);
+            return null;
+        } finally {
+            closeQuietly(in, log);
+        }
+    }
+
+    /**
+    * Persists the index so later launches can skip compilation.
+    *
+    * @param file
+    *        Index file to (over)write
+    * @param log
+    *        Receives write failures
+    * @return
+    *        True if the file was written
+    */
+    boolean write(File file, DiagnosticLog log) {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(sourceStamp);
+            out.writeInt(keys.length);
+
+            for (int i = 0; i < keys.length; i++) {
+                out.writeLong(keys[i]);
+                for (int j = 0; j < ENTRY_SIZE; j++) {
+                    out.writeInt(entries[i * ENTRY_SIZE + j]);
+                }
+            }
+
+            out.close();
+            out = null;
+
+            // Rename so a crash mid-write never leaves a partial index behind
+            return tmp.renameTo(file);
+        } catch (IOException e) {
+            log.recordError(e);
+            tmp.delete();
+            return false;
+        } finally {
+            closeQuietly(out, log);
+        }
+    }
+
+    /**
+    * Compiles the SDK's XML configuration into an index.
+    *
+    * @param xml
+    *        Stream of the XML configuration file, not closed
+    * @param sourceStamp
+    *        Stamp identifying the XML content
+    * @return
+    *        The compiled index
+    */
+    static ProfileIndex compile(InputStream xml, long sourceStamp) throws IOException, XmlPullParserException {
+        XmlPullParser parser = XmlPullParserFactory.newInstance().newPullParser();
+        parser.setInput(xml, null);
+
+        // Manufacturer sections, listed in the summary's phone list
+        Set<String> manufacturers = new HashSet<String>();
+
+        // Models the SDK may resolve from sections other than their manufacturer's
+        Set<String> overriddenModels = new HashSet<String>();
+
+        // Keys seen more than once
+        Set<Long> duplicateKeys = new HashSet<Long>();
+
+        TreeMap<Long, int[]> compiled = new TreeMap<Long, int[]>();
+
+        String section = null;
+        String model = null;
+        String field = null;
+        int[] entry = null;
+        StringBuilder text = new StringBuilder();
+
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+            int depth = parser.getDepth();
+
+            if (event == XmlPullParser.START_TAG) {
+                String name = parser.getName();
+
+                if (depth == 2) {
+                    section = name;
+                } else if (depth == 3) {
+                    model = name;
+
+                    if ("phone".equals(name)) {
+                        String modelNumber = parser.getAttributeValue(null, "model_number");
+                        if (modelNumber != null) {
+                            overriddenModels.add(normalize(modelNumber));
+                        }
+                    }
+
+                    entry = manufacturers.contains(normalize(section)) ? new int[ENTRY_SIZE] : null;
+                } else if (depth == 4) {
+                    if ("voice-recognition".equals(section)) {
+                        // Voice recognition entries are grouped by manufacturer prefix
+                        overriddenModels.add(normalize(name));
+                    }
+
+                    field = name;
+                    text.setLength(0);
+
+                    if (entry != null && !acceptAttribute(entry, name, parser.getAttributeValue(null, "val"))) {
+                        entry = null;
+                    }
+                }
+            } else if (event == XmlPullParser.TEXT) {
+                text.append(parser.getText());
+            } else if (event == XmlPullParser.END_TAG) {
+                if (depth == 4) {
+                    if ("Summary".equals(section) && "PhoneList".equals(model)) {
+                        manufacturers.add(normalize(text.toString()));
+                    } else if (entry != null && !acceptField(entry, field, text.toString().trim())) {
+                        entry = null;
+                    }
+                    field = null;
+                } else if (depth == 3) {
+                    if (entry != null && has(entry, FREQUENCE_INPUT)) {
+                        Long key = key(normalize(section), normalize(model));
+                        if (compiled.put(key, entry) != null) {
+                            duplicateKeys.add(key);
+                        }
+                    }
+                    entry = null;
+                    model = null;
+                }
+            }
+        }
+
+        for (Long key : duplicateKeys) {
+            compiled.remove(key);
+        }
+        for (String manufacturer : manufacturers) {
+            for (String overridden : overriddenModels) {
+                compiled.remove(key(manufacturer, overridden));
+            }
+        }
+
+        long[] keys = new long[compiled.size()];
+        int[] entries = new int[compiled.size() * ENTRY_SIZE];
+        int i = 0;
+
+        for (Map.Entry<Long, int[]> e : compiled.entrySet()) {
+            keys[i] = e.getKey();
+            System.arraycopy(e.getValue(), 0, entries, i * ENTRY_SIZE, ENTRY_SIZE);
+            i++;
+        }
+
+        return new ProfileIndex(sourceStamp, keys, entries);
+    }
+
+    /**
+    * Checks the attribute of a profile field before its content is read.
+    *
+    * @return
+    *        False if the entry needs rules the index does not model
+    */
+    private static boolean acceptAttribute(int[] entry, String field, String val) {
+        if ("support_status".equals(field)) {
+            // Record the reader types listed and those fully supported,
+            // e.g. "um2g=m;ump=m;um2=s;um2i=s;shuttle=s"
+            if (val == null) {
+                return false;
+            }
+            boolean othersSupported = true;
+            for (String status : val.split(";")) {
+                String[] parts = status.trim().split("=", 2);
+                boolean supported = parts.length == 2 && "s".equals(parts[1]);
+                int reader = indexOf(parts[0]);
+                if (reader < 0) {
+                    // Codes not known here only count when no type is set
+                    reader = OTHER_READERS;
+                    othersSupported &= supported;
+                    supported = othersSupported;
+                }
+
+                entry[LISTED_READERS] |= 1 << reader;
+                if (supported) {
+                    entry[SUPPORTED_READERS] |= 1 << reader;
+                } else {
+                    entry[SUPPORTED_READERS] &= ~(1 << reader);
+                }
+            }
+            return true;
+        }
+
+        // Version specific settings carry a "val" attribute
+        return val == null;
+    }
+
+    /**
+    * Stores the content of a profile field into an entry.
+    *
+    * @return
+    *        False if the field is unknown or malformed
+    */
+    private static boolean acceptField(int[] entry, String field, String value) {
+        if ("support_status".equals(field)) {
+            return true;
+        }
+
+        for (int slot = 1; slot < FIELD_TAGS.length; slot++) {
+            if (FIELD_TAGS[slot].equals(field)) {
+                try {
+                    entry[slot] = Integer.parseInt(value);
+                    entry[0] |= 1 << slot;
+                    return true;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+    * @return
+    *        Bit of a reader code in the reader masks, -1 if unknown
+    */
+    private static int indexOf(String readerCode) {
+        for (int i = 0; i < READER_CODES.length; i++) {
+            if (READER_CODES[i].equals(readerCode)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+    * Normalizes a name the way the SDK does before matching the XML.
+    */
+    static String normalize(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.US).replaceAll("\\s*", "");
+    }
+
+    /**
+    * 64-bit FNV-1a hash of a normalized manufacturer and model.
+    */
+    static long key(String manufacturer, String model) {
+        long hash = 0xcbf29ce484222325L;
+        hash = hash(hash, manufacturer);
+        hash = (hash ^ '/') * 0x100000001b3L;
+        return hash(hash, model);
+    }
+
+    private static long hash(long hash, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            hash = (hash ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void closeQuietly(Closeable c, DiagnosticLog log) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                log.recordError(e);
+            }
+        }
+    }
+}
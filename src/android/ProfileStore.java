@@ -0,0 +1,192 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+* Auto Config profiles found on this device, one per device model, OS
+* version and reader type, so a profile tuned for one combination is never
+* reused for another. Profiles are kept as the flat arrays of ProfileCodec
+* and persisted together in a small binary file.
+*
+* Methods are synchronized as the store is shared by all plugin instances.
+*/
+final class ProfileStore {
+
+    // Identifies a store file and its layout
+    private static final int MAGIC = 0x554d5053; // "UMPS"
+    private static final int FORMAT_VERSION = 1;
+
+    // Key part used when no reader type was set
+    private static final String ANY_READER_TYPE = "*";
+
+    // Profiles by key
+    private final Map<String, int[]> profiles = new HashMap<String, int[]>();
+
+    /**
+    * Builds the key a profile is stored under.
+    *
+    * @param manufacturer
+    *        Device manufacturer, as in Build.MANUFACTURER
+    * @param model
+    *        Device model, as in Build.MODEL
+    * @param apiLevel
+    *        OS version, as in Build.VERSION.SDK_INT
+    * @param readerType
+    *        Name of the reader type set, or null if none
+    * @return
+    *        Key of the profile
+    */
+    static String key(String manufacturer, String model, int apiLevel, String readerType) {
+        return ProfileIndex.normalize(manufacturer) + "/" + ProfileIndex.normalize(model)
+            + "/" + apiLevel + "/" + (readerType != null ? readerType : ANY_READER_TYPE);
+    }
+
+    /**
+    * Number of profiles in the store.
+    */
+    synchronized int size() {
+        return profiles.size();
+    }
+
+    /**
+    * Finds a profile.
+    *
+    * @param key
+    *        Key built by key()
+    * @return
+    *        Copy of the profile's fields, or null if none is stored
+    */
+    synchronized int[] get(String key) {
+        int[] fields = profiles.get(key);
+        return fields != null ? fields.clone() : null;
+    }
+
+    /**
+    * Adds or replaces a profile in memory. Call write() to persist it.
+    *
+    * @param key
+    *        Key built by key()
+    * @param fields
+    *        Profile fields, as produced by ProfileCodec
+    */
+    synchronized void put(String key, int[] fields) {
+        profiles.put(key, fields.clone());
+    }
+
+    /**
+    * Reads a store file written by write().
+    *
+    * @param file
+    *        Store file
+    * @param log
+    *        Receives read failures
+    * @return
+    *        The store, empty if the file is missing, corrupt or from
+    *        another format version
+    */
+    static ProfileStore read(File file, DiagnosticLog log) {
+        ProfileStore store = new ProfileStore();
+
+        if (!file.isFile()) {
+            return store;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                return store;
+            }
+
+            // Field count is stored so profiles written before fields were
+            // added to ProfileCodec can still be read
+            int fieldCount = in.readInt();
+            int count = in.readInt();
+
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                int[] fields = new int[ProfileCodec.FIELD_COUNT];
+
+                for (int j = 0; j < fieldCount; j++) {
+                    int value = in.readInt();
+                    if (j < fields.length) {
+                        fields[j] = value;
+                    }
+                }
+
+                store.profiles.put(key, fields);
+            }
+        } catch (IOException e) {
+            log.recordError(e);
+            store.profiles.clear();
+        } finally {
+            closeQuietly(in, log);
+        }
+
+        return store;
+    }
+
+    /**
+    * Persists all profiles.
+    *
+    * @param file
+    *        Store file to (over)write
+    * @param log
+    *        Receives write failures
+    * @return
+    *        True if the file was written
+    */
+    synchronized boolean write(File file, DiagnosticLog log) {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(ProfileCodec.FIELD_COUNT);
+            out.writeInt(profiles.size());
+
+            for (Map.Entry<String, int[]> e : profiles.entrySet()) {
+                out.writeUTF(e.getKey());
+                for (int value : e.getValue()) {
+                    out.writeInt(value);
+                }
+            }
+
+            out.close();
+            out = null;
+
+            // Rename so a crash mid-write never loses the stored profiles
+            return tmp.renameTo(file);
+        } catch (IOException e) {
+            log.recordError(e);
+            tmp.delete();
+            return false;
+        } finally {
+            closeQuietly(out, log);
+        }
+    }
+
+    private static void closeQuietly(Closeable c, DiagnosticLog log) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                log.recordError(e);
+            }
+        }
+    }
+}
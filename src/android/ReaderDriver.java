@@ -0,0 +1,75 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import IDTech.MSR.XMLManager.StructConfigParameters;
+import IDTech.MSR.uniMag.uniMagReaderMsg;
+import IDTech.MSR.uniMag.uniMagReader.ReaderType;
+
+/**
+* The part of the SDK's uniMagReader the plugin drives. Readers report
+* back through the uniMagReaderMsg they were created with, so the plugin
+* behaves the same whether the driver talks to a physical swiper
+* (UniMagDriver) or replays recorded callbacks (SimulatedDriver, in the
+* JVM tests).
+*/
+interface ReaderDriver {
+
+    /**
+    * Creates drivers as readers are configured.
+    */
+    interface Factory {
+        /**
+        * @param listener
+        *        Receives the reader's callbacks
+        * @param type
+        *        Type of reader attached, null if unknown
+        * @return
+        *        A new driver, not yet listening
+        */
+        ReaderDriver create(uniMagReaderMsg listener, ReaderType type);
+    }
+
+    /**
+    * Starts listening for the reader being attached and powers it up.
+    */
+    void registerListen();
+
+    /**
+    * Stops listening to the reader and cancels running tasks.
+    */
+    void unregisterListen();
+
+    /**
+    * Frees the reader, the driver is not used afterwards.
+    */
+    void release();
+
+    void setVerboseLoggingEnable(boolean enable);
+
+    /**
+    * @param seconds
+    *        Time a swipe is waited for before onReceiveMsgTimeout
+    */
+    boolean setTimeoutOfSwipeCard(int seconds);
+
+    /**
+    * Connects with the settings of a known profile.
+    */
+    boolean connectWithProfile(StructConfigParameters profile);
+
+    void setXMLFileNameWithPath(String path);
+
+    /**
+    * Connects with the settings the XML file lists for this device.
+    */
+    boolean loadingConfigurationXMLFile(boolean update);
+
+    boolean startAutoConfig(String xmlPath, boolean useDefault);
+
+    void stopAutoConfig();
+
+    boolean startSwipeCard();
+
+    void stopSwipeCard();
+
+    boolean isSwipeCardRunning();
+}
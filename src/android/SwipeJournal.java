@@ -0,0 +1,663 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+/**
+* Append-only journal of decoded swipes, so a swipe survives the WebView
+* reloading or the app dying before JavaScript handled it. Each swipe is
+* written, encrypted, to the journal before its event is fired and stays
+* there until JavaScript acknowledges its sequence number.
+*
+* The journal is a directory of segment files, each a run of records:
+*
+*   entry: type, sequence number (8 bytes), sealed length (4 bytes),
+*          GCM IV, card JSON encrypted with AES-GCM, tag
+*   ack:   type, sequence number acknowledged along with all before it
+*
+* Records are written straight to the file, which is enough to survive
+* the app dying, and flushed to storage once per COMMIT_WINDOW_MS however
+* many swipes arrived in it. A segment reaching SEGMENT_BYTES is closed and
+* a new one started with an ack record, and closed segments whose entries
+* were all acknowledged are deleted.
+*
+* On opening, every segment is scanned for the last sequence number and
+* acknowledgement, a torn record at the end of the last segment is cut
+* off and appends continue in it.
+*
+* Methods are synchronized as the flush runs on its own thread.
+*/
+final class SwipeJournal {
+
+    /**
+    * Receives the entries not acknowledged yet.
+    */
+    interface Replay {
+        /**
+        * @param seq
+        *        Sequence number of the entry
+        * @param json
+        *        Card JSON as journaled, journal_seq included
+        */
+        void entry(long seq, String json);
+    }
+
+    // Window during which appended records are flushed together, in
+    // milliseconds
+    static final long COMMIT_WINDOW_MS = 10;
+
+    // Size from which a segment is closed and a new one started
+    static final int SEGMENT_BYTES = 64 * 1024;
+
+    // Record types
+    private static final byte ENTRY = 1;
+    private static final byte ACK = 2;
+
+    // Record lengths, entries followed by their sealed card
+    private static final int ENTRY_HEADER_LENGTH = 13;
+    private static final int ACK_LENGTH = 9;
+
+    // Sealed card layout and limit
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+    private static final int MAX_SEALED_LENGTH = 64 * 1024;
+
+    // Segment file names, holding the sequence number they start at
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    // Android Keystore entry of the journal key
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "unimag-swipe-journal";
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    private final File dir;
+    private final SecretKey key;
+    private final Cipher cipher;
+
+    // Segments oldest first, the last one being appended to
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private FileOutputStream out;
+    private long outLength;
+
+    // Next sequence number, and the last one acknowledged
+    private long nextSeq = 1;
+    private long acked = 0;
+
+    // Flushes records to storage off the reader thread
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+    private boolean flushScheduled = false;
+
+    // Flushes the records written since the last one
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // Counts reported by getMetrics
+    private long appendCount = 0;
+    private long flushCount = 0;
+    private long flushFailureCount = 0;
+    private long unreadableCount = 0;
+
+    // Scratch buffers, zeroed after each use as they hold card data
+    private final StringBuilder json = new StringBuilder(512);
+    private byte[] plain = new byte[512];
+    private byte[] record = new byte[1024];
+
+    /**
+    * A segment file and the last entry it holds.
+    */
+    private static final class Segment {
+        final File file;
+        final long firstSeq;
+        long lastSeq = 0;
+
+        Segment(File file, long firstSeq) {
+            this.file = file;
+            this.firstSeq = firstSeq;
+        }
+    }
+
+    private SwipeJournal(File dir, SecretKey key) throws GeneralSecurityException {
+        this.dir = dir;
+        this.key = key;
+        cipher = Cipher.getInstance(TRANSFORMATION);
+    }
+
+    /**
+    * Opens the journal kept in a directory, creating it if needed.
+    *
+    * @param dir
+    *        Directory of the segment files
+    * @param key
+    *        AES key entries are sealed with, e.g. keystoreKey()
+    * @return
+    *        The journal, ready to append to
+    */
+    static SwipeJournal open(File dir, SecretKey key) throws IOException, GeneralSecurityException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+
+        SwipeJournal journal = new SwipeJournal(dir, key);
+        journal.recover();
+        return journal;
+    }
+
+    /**
+    * Gets the journal key from the Android Keystore, generating it the
+    * first time. Requires Android 6.0.
+    *
+    * @return
+    *        Key that never leaves the Keystore
+    */
+    static SecretKey keystoreKey() throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+
+        Key stored = keyStore.getKey(KEY_ALIAS, null);
+        if (stored instanceof SecretKey) {
+            return (SecretKey) stored;
+        }
+
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return generator.generateKey();
+    }
+
+    /**
+    * @return
+    *        Sequence number the next appended entry gets, to be written
+    *        into the card before it is appended
+    */
+    synchronized long getNextSeq() {
+        return nextSeq;
+    }
+
+    /**
+    * Seals a card and appends it as the entry numbered getNextSeq(). The
+    * record is flushed to storage within COMMIT_WINDOW_MS.
+    *
+    * @param encoder
+    *        Encoder set to the card, its journalSeq already assigned
+    */
+    synchronized void append(CardEncoder encoder) throws IOException, GeneralSecurityException {
+        try {
+            encoder.appendJSON(json);
+            int plainLength = encodeUTF8(json);
+
+            cipher.init(Cipher.ENCRYPT_MODE, key);
+            byte[] iv = cipher.getIV();
+            if (iv == null || iv.length != IV_LENGTH) {
+                throw new GeneralSecurityException("Unexpected IV length");
+            }
+
+            int sealedLength = IV_LENGTH + cipher.getOutputSize(plainLength);
+            if (record.length < ENTRY_HEADER_LENGTH + sealedLength) {
+                Arrays.fill(record, (byte) 0);
+                record = new byte[ENTRY_HEADER_LENGTH + sealedLength];
+            }
+
+            record[0] = ENTRY;
+            putLong(record, 1, nextSeq);
+            putInt(record, 9, sealedLength);
+            System.arraycopy(iv, 0, record, ENTRY_HEADER_LENGTH, IV_LENGTH);
+
+            // The sequence number is authenticated so entries cannot be
+            // swapped
+            cipher.updateAAD(record, 1, 8);
+            int length = ENTRY_HEADER_LENGTH + IV_LENGTH
+                    + cipher.doFinal(plain, 0, plainLength, record, ENTRY_HEADER_LENGTH + IV_LENGTH);
+
+            write(record, length);
+
+            activeSegment().lastSeq = nextSeq++;
+            appendCount++;
+        } finally {
+            int length = json.length();
+            json.setLength(0);
+            json.setLength(length);
+            json.setLength(0);
+            Arrays.fill(plain, (byte) 0);
+            Arrays.fill(record, (byte) 0);
+        }
+    }
+
+    /**
+    * Acknowledges entries JavaScript is done with, deleting closed
+    * segments left with no entry to keep.
+    *
+    * @param seq
+    *        Sequence number of the last entry consumed, entries before it
+    *        being acknowledged too
+    */
+    synchronized void ack(long seq) throws IOException {
+        seq = Math.min(seq, nextSeq - 1);
+        if (seq <= acked) {
+            return;
+        }
+
+        acked = seq;
+        writeAck();
+        compact();
+    }
+
+    /**
+    * Reads back the entries not acknowledged yet, oldest first. Entries
+    * that cannot be decrypted, e.g. as the key was lost with an app
+    * reinstall, are skipped.
+    *
+    * @param before
+    *        Entries from this sequence number on are left out, 0 for none
+    * @param replay
+    *        Receives the entries
+    */
+    synchronized void replay(long before, Replay replay) throws IOException {
+        for (Segment segment : segments) {
+            if (segment.lastSeq <= acked) {
+                continue;
+            }
+
+            byte[] data = readFile(segment.file);
+            try {
+                parse(data, data.length, null, before, replay);
+            } finally {
+                Arrays.fill(data, (byte) 0);
+            }
+        }
+    }
+
+    /**
+    * @return
+    *        Entries not acknowledged yet
+    */
+    synchronized long getPendingCount() {
+        return nextSeq - 1 - acked;
+    }
+
+    synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    synchronized long getAppendCount() {
+        return appendCount;
+    }
+
+    synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    synchronized long getFlushFailureCount() {
+        return flushFailureCount;
+    }
+
+    synchronized long getUnreadableCount() {
+        return unreadableCount;
+    }
+
+    /**
+    * Flushes what was written and closes the journal.
+    */
+    void close() {
+        flusher.shutdown();
+
+        synchronized (this) {
+            if (out == null) {
+                return;
+            }
+
+            try {
+                out.getFD().sync();
+                out.close();
+            } catch (IOException e) {
+                flushFailureCount++;
+            }
+            out = null;
+        }
+    }
+
+    /**
+    * Scans the segments left by an earlier run and opens the last one for
+    * appending, after cutting off a torn record at its end.
+    */
+    private void recover() throws IOException {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                long firstSeq = parseFirstSeq(file.getName());
+                if (firstSeq > 0) {
+                    segments.add(new Segment(file, firstSeq));
+                }
+            }
+        }
+
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment a, Segment b) {
+                return a.firstSeq < b.firstSeq ? -1 : a.firstSeq > b.firstSeq ? 1 : 0;
+            }
+        });
+
+        int validLength = 0;
+        for (Segment segment : segments) {
+            nextSeq = Math.max(nextSeq, segment.firstSeq);
+
+            byte[] data = readFile(segment.file);
+            validLength = parse(data, data.length, segment, 0, null);
+            Arrays.fill(data, (byte) 0);
+        }
+
+        if (segments.isEmpty()) {
+            startSegment();
+            return;
+        }
+
+        Segment last = activeSegment();
+        RandomAccessFile file = new RandomAccessFile(last.file, "rw");
+        try {
+            file.setLength(validLength);
+        } finally {
+            file.close();
+        }
+
+        out = new FileOutputStream(last.file, true);
+        outLength = validLength;
+        compact();
+    }
+
+    /**
+    * Walks the records of a segment, stopping at the first one that is
+    * torn or malformed.
+    *
+    * @param segment
+    *        Segment being recovered, whose last entry and the journal's
+    *        counters are updated, or null when replaying
+    * @param before
+    *        Entries replayed stop before this sequence number, 0 for none
+    * @param replay
+    *        Receives the entries not acknowledged, or null when recovering
+    * @return
+    *        Length of the well formed records
+    */
+    private int parse(byte[] data, int length, Segment segment, long before, Replay replay) {
+        int at = 0;
+
+        while (at < length) {
+            if (data[at] == ACK && at + ACK_LENGTH <= length) {
+                if (segment != null) {
+                    acked = Math.max(acked, getLong(data, at + 1));
+                }
+                at += ACK_LENGTH;
+            } else if (data[at] == ENTRY && at + ENTRY_HEADER_LENGTH <= length) {
+                long seq = getLong(data, at + 1);
+                int sealedLength = getInt(data, at + 9);
+                if (sealedLength <= IV_LENGTH || sealedLength > MAX_SEALED_LENGTH
+                        || sealedLength > length - at - ENTRY_HEADER_LENGTH) {
+                    break;
+                }
+
+                if (segment != null) {
+                    segment.lastSeq = seq;
+                    nextSeq = Math.max(nextSeq, seq + 1);
+                } else if (seq > acked && (before == 0 || seq < before)) {
+                    String card = unseal(data, at, sealedLength);
+                    if (card != null) {
+                        replay.entry(seq, card);
+                    } else unreadableCount++;
+                }
+
+                at += ENTRY_HEADER_LENGTH + sealedLength;
+            } else break;
+        }
+
+        return at;
+    }
+
+    /**
+    * Decrypts a sealed card.
+    *
+    * @return
+    *        Card JSON, or null if it fails authentication
+    */
+    private String unseal(byte[] data, int at, int sealedLength) {
+        int sealedAt = at + ENTRY_HEADER_LENGTH;
+        byte[] card = null;
+
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, data, sealedAt, IV_LENGTH));
+            cipher.updateAAD(data, at + 1, 8);
+            card = cipher.doFinal(data, sealedAt + IV_LENGTH, sealedLength - IV_LENGTH);
+            return new String(card, "UTF-8");
+        } catch (GeneralSecurityException e) {
+            return null;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (card != null) {
+                Arrays.fill(card, (byte) 0);
+            }
+        }
+    }
+
+    /**
+    * Writes a record to the active segment, starting a new segment first
+    * if it is full and holds entries, and schedules a flush.
+    */
+    private void write(byte[] bytes, int length) throws IOException {
+        if (outLength + length > SEGMENT_BYTES && activeSegment().firstSeq != nextSeq) {
+            closeSegment();
+            startSegment();
+            compact();
+        }
+
+        out.write(bytes, 0, length);
+        outLength += length;
+
+        if (!flushScheduled) {
+            flushScheduled = true;
+            flusher.schedule(flushTask, COMMIT_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void writeAck() throws IOException {
+        byte[] ack = new byte[ACK_LENGTH];
+        ack[0] = ACK;
+        putLong(ack, 1, acked);
+        write(ack, ACK_LENGTH);
+    }
+
+    /**
+    * Flushes everything written so far to storage in one go, outside of
+    * the lock so appends carry on meanwhile.
+    */
+    private void flush() {
+        FileOutputStream target;
+        synchronized (this) {
+            flushScheduled = false;
+            target = out;
+        }
+        if (target == null) {
+            return;
+        }
+
+        try {
+            target.getFD().sync();
+            synchronized (this) {
+                flushCount++;
+            }
+        } catch (IOException e) {
+            // A segment closed meanwhile was flushed as it was closed
+            synchronized (this) {
+                if (target == out) {
+                    flushFailureCount++;
+                }
+            }
+        }
+    }
+
+    private void closeSegment() throws IOException {
+        out.getFD().sync();
+        out.close();
+        out = null;
+    }
+
+    /**
+    * Starts a segment at the next sequence number, opened with the last
+    * acknowledgement so it is not lost as older segments are deleted.
+    */
+    private void startSegment() throws IOException {
+        Segment segment = new Segment(new File(dir, SEGMENT_PREFIX + Long.toHexString(nextSeq) + SEGMENT_SUFFIX),
+                                      nextSeq);
+
+        out = new FileOutputStream(segment.file);
+        outLength = 0;
+        segments.add(segment);
+
+        writeAck();
+    }
+
+    /**
+    * Deletes closed segments whose entries were all acknowledged.
+    */
+    private void compact() {
+        for (int i = segments.size() - 2; i >= 0; i--) {
+            Segment segment = segments.get(i);
+            if (segment.lastSeq <= acked && segment.file.delete()) {
+                segments.remove(i);
+            }
+        }
+    }
+
+    private Segment activeSegment() {
+        return segments.get(segments.size() - 1);
+    }
+
+    /**
+    * Encodes the JSON scratch buffer into the plain scratch buffer. Card
+    * JSON only holds characters of the Basic Multilingual Plane.
+    *
+    * @return
+    *        Number of bytes
+    */
+    private int encodeUTF8(CharSequence chars) {
+        int length = 0;
+
+        for (int i = 0; i < chars.length(); i++) {
+            if (plain.length < length + 3) {
+                byte[] grown = Arrays.copyOf(plain, plain.length * 2);
+                Arrays.fill(plain, (byte) 0);
+                plain = grown;
+            }
+
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                plain[length++] = (byte) c;
+            } else if (c < 0x800) {
+                plain[length++] = (byte) (0xc0 | c >> 6);
+                plain[length++] = (byte) (0x80 | c & 0x3f);
+            } else {
+                plain[length++] = (byte) (0xe0 | c >> 12);
+                plain[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+                plain[length++] = (byte) (0x80 | c & 0x3f);
+            }
+        }
+
+        return length;
+    }
+
+    /**
+    * @return
+    *        Sequence number a segment file starts at, 0 if the file is not
+    *        a segment
+    */
+    private static long parseFirstSeq(String name) {
+        if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)) {
+            return 0;
+        }
+
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                                                 name.length() - SEGMENT_SUFFIX.length()), 16);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int read = 0;
+            while (read < data.length) {
+                int count = in.read(data, read, data.length - read);
+                if (count < 0) {
+                    return Arrays.copyOf(data, read);
+                }
+                read += count;
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static void putLong(byte[] bytes, int at, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[at + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static void putInt(byte[] bytes, int at, int value) {
+        for (int i = 3; i >= 0; i--) {
+            bytes[at + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static long getLong(byte[] bytes, int at) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = value << 8 | (bytes[at + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static int getInt(byte[] bytes, int at) {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            value = value << 8 | (bytes[at + i] & 0xff);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,248 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+/**
+* Bounded queue of decoded swipes waiting to be acknowledged by
+* JavaScript. Swipes are handed out for delivery one at a time, the next
+* one only once the previous was acknowledged, so a busy WebView never
+* has more than one card waiting in its own queue. Slots are allocated
+* once and reused, swipes being copied into them and wiped once removed.
+*
+* Only used from the reader thread.
+*/
+final class SwipeQueue {
+
+    // What to do with a new swipe when the queue is full
+    static final int DROP_OLDEST = 0;
+    static final int REJECT = 1;
+    static final int PAUSE = 2;
+
+    // Swipes delivered but not yet acknowledged at most
+    private static final int MAX_IN_FLIGHT = 1;
+
+    // Ring of queued swipes, their ids and arrival times, oldest at head
+    private final CardData[] cards;
+    private final long[] ids;
+    private final long[] receivedAt;
+    private int head;
+    private int count;
+
+    // Swipes from head that were already delivered
+    private int delivered;
+
+    private final int policy;
+
+    // Id of the next swipe queued, ids start at 1
+    private long nextId = 1;
+
+    // Swipes lost because the queue was full
+    private long dropped;
+    private long rejected;
+
+    /**
+    * @param capacity
+    *        Swipes kept at most
+    * @param policy
+    *        DROP_OLDEST, REJECT or PAUSE
+    */
+    SwipeQueue(int capacity, int policy) {
+        this.policy = policy;
+        cards = new CardData[capacity];
+        ids = new long[capacity];
+        receivedAt = new long[capacity];
+
+        for (int i = 0; i < capacity; i++) {
+            cards[i] = new CardData();
+        }
+    }
+
+    /**
+    * Converts a policy name from JavaScript.
+    *
+    * @param name
+    *        "drop_oldest", "reject" or "pause"
+    * @return
+    *        Matching policy, or -1 if unknown
+    */
+    static int parsePolicy(String name) {
+        if ("drop_oldest".equals(name)) {
+            return DROP_OLDEST;
+        } else if ("reject".equals(name)) {
+            return REJECT;
+        } else if ("pause".equals(name)) {
+            return PAUSE;
+        }
+        return -1;
+    }
+
+    int getPolicy() {
+        return policy;
+    }
+
+    int size() {
+        return count;
+    }
+
+    boolean isFull() {
+        return count == cards.length;
+    }
+
+    /**
+    * @return
+    *        Whether a new swipe would be queued rather than rejected
+    */
+    boolean accepts() {
+        return !isFull() || (policy == DROP_OLDEST && delivered < count);
+    }
+
+    long getDropped() {
+        return dropped;
+    }
+
+    long getRejected() {
+        return rejected;
+    }
+
+    /**
+    * Queues a copy of a swipe, applying the policy if the queue is full.
+    * DROP_OLDEST drops the oldest swipe not delivered yet, those
+    * delivered being still in JavaScript's hands, and rejects the new
+    * swipe if all were delivered. With PAUSE the reader should not be
+    * armed while full, so a swipe arriving anyway is rejected.
+    *
+    * @param card
+    *        Decoded swipe
+    * @param time
+    *        When the card data arrived, as System.nanoTime
+    * @return
+    *        Id of the queued swipe, or -1 if it was rejected
+    */
+    long offer(CardData card, long time) {
+        if (isFull()) {
+            if (!accepts()) {
+                rejected++;
+                return -1;
+            }
+            removeUndelivered();
+            dropped++;
+        }
+
+        int tail = (head + count) % cards.length;
+        cards[tail].copyFrom(card);
+        ids[tail] = nextId++;
+        receivedAt[tail] = time;
+        count++;
+
+        return ids[tail];
+    }
+
+    /**
+    * Hands out the next swipe to deliver, if no more than MAX_IN_FLIGHT
+    * swipes would be waiting for acknowledgement.
+    *
+    * @return
+    *        Slot of the swipe, or -1 if none should be delivered now
+    */
+    int takeForDelivery() {
+        if (delivered >= count || delivered >= MAX_IN_FLIGHT) {
+            return -1;
+        }
+
+        return (head + delivered++) % cards.length;
+    }
+
+    CardData cardAt(int slot) {
+        return cards[slot];
+    }
+
+    long idAt(int slot) {
+        return ids[slot];
+    }
+
+    long receivedAt(int slot) {
+        return receivedAt[slot];
+    }
+
+    /**
+    * @return
+    *        Journal sequence number of the oldest queued swipe that was
+    *        journaled, 0 if none
+    */
+    long getFirstJournalSeq() {
+        for (int i = 0; i < count; i++) {
+            long seq = cards[(head + i) % cards.length].journalSeq;
+            if (seq > 0) {
+                return seq;
+            }
+        }
+        return 0;
+    }
+
+    /**
+    * Removes the delivered swipes up to and including the one
+    * acknowledged. Swipes not delivered yet stay queued, whatever the id,
+    * since JavaScript cannot have consumed them.
+    *
+    * @param id
+    *        Id of the last swipe consumed by JavaScript
+    * @return
+    *        Number of swipes removed
+    */
+    int ack(long id) {
+        int removed = 0;
+
+        while (delivered > 0 && ids[head] <= id) {
+            removeHead();
+            removed++;
+        }
+
+        return removed;
+    }
+
+    /**
+    * Marks all queued swipes as not delivered, when the page that
+    * received them went away.
+    */
+    void redeliver() {
+        delivered = 0;
+    }
+
+    /**
+    * Wipes all queued swipes, when the queue is discarded.
+    */
+    void clear() {
+        while (count > 0) {
+            removeHead();
+        }
+    }
+
+    /**
+    * Removes the oldest swipe not delivered yet, moving the ones after it
+    * up and its wiped slot to the tail.
+    */
+    private void removeUndelivered() {
+        int slot = (head + delivered) % cards.length;
+        CardData removed = cards[slot];
+        removed.wipe();
+
+        for (int i = delivered + 1; i < count; i++) {
+            int next = (head + i) % cards.length;
+            cards[slot] = cards[next];
+            ids[slot] = ids[next];
+            receivedAt[slot] = receivedAt[next];
+            slot = next;
+        }
+
+        cards[slot] = removed;
+        count--;
+    }
+
+    private void removeHead() {
+        cards[head].wipe();
+        head = (head + 1) % cards.length;
+        count--;
+
+        if (delivered > 0) {
+            delivered--;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+/**
+* Throughput figures of continuous swipe mode: how many cards were read in
+* the last minute and how long the reader took to be armed again after
+* each one. Times come from System.nanoTime.
+*
+* Only used from the reader thread.
+*/
+final class SwipeStats {
+
+    // Length of the window swipes per minute are counted over
+    private static final long MINUTE_NANOS = 60000000000L;
+
+    // Times of the most recent swipes, oldest overwritten first
+    private final long[] swipeTimes = new long[256];
+    private int swipeCount;
+    private int swipeHead;
+
+    // Total swipes since continuous mode started
+    private long totalSwipes;
+
+    // Re-arm latencies since continuous mode started
+    private long lastRearmNanos;
+    private long maxRearmNanos;
+    private long totalRearmNanos;
+    private long rearmCount;
+
+    /**
+    * Clears all figures when continuous mode starts.
+    */
+    void reset() {
+        swipeCount = 0;
+        swipeHead = 0;
+        totalSwipes = 0;
+        lastRearmNanos = 0;
+        maxRearmNanos = 0;
+        totalRearmNanos = 0;
+        rearmCount = 0;
+    }
+
+    /**
+    * Records a card read by the reader, whether or not it could be parsed.
+    *
+    * @param time
+    *        When the card data arrived
+    */
+    void recordSwipe(long time) {
+        swipeTimes[swipeHead] = time;
+        swipeHead = (swipeHead + 1) % swipeTimes.length;
+        if (swipeCount < swipeTimes.length) {
+            swipeCount++;
+        }
+        totalSwipes++;
+    }
+
+    /**
+    * Records the time between card data arriving and the reader being
+    * ready for the next card.
+    *
+    * @param nanos
+    *        Re-arm latency
+    */
+    void recordRearm(long nanos) {
+        lastRearmNanos = nanos;
+        maxRearmNanos = Math.max(maxRearmNanos, nanos);
+        totalRearmNanos += nanos;
+        rearmCount++;
+    }
+
+    /**
+    * @param now
+    *        Current time
+    * @return
+    *        Swipes recorded over the last minute
+    */
+    int getSwipesPerMinute(long now) {
+        int count = 0;
+
+        for (int i = 1; i <= swipeCount; i++) {
+            long time = swipeTimes[(swipeHead - i + swipeTimes.length) % swipeTimes.length];
+            if (now - time > MINUTE_NANOS) {
+                break;
+            }
+            count++;
+        }
+
+        return count;
+    }
+
+    long getTotalSwipes() {
+        return totalSwipes;
+    }
+
+    double getLastRearmMillis() {
+        return lastRearmNanos / 1e6;
+    }
+
+    double getMaxRearmMillis() {
+        return maxRearmNanos / 1e6;
+    }
+
+    double getMeanRearmMillis() {
+        return rearmCount > 0 ? totalRearmNanos / 1e6 / rearmCount : 0;
+    }
+}
@@ -0,0 +1,103 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import android.content.Context;
+
+import IDTech.MSR.XMLManager.StructConfigParameters;
+import IDTech.MSR.uniMag.uniMagReader;
+import IDTech.MSR.uniMag.uniMagReaderMsg;
+import IDTech.MSR.uniMag.uniMagReader.ReaderType;
+
+/**
+* Driver for a physical swiper, forwarding to the SDK's uniMagReader.
+*/
+final class UniMagDriver implements ReaderDriver {
+
+    private final uniMagReader reader;
+
+    private UniMagDriver(uniMagReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+    * @param context
+    *        Application context the readers are created in
+    * @return
+    *        Factory of drivers for physical swipers
+    */
+    static Factory factory(final Context context) {
+        return new Factory() {
+            @Override
+            public ReaderDriver create(uniMagReaderMsg listener, ReaderType type) {
+                // Init with type if possible
+                if (type != null) {
+                    return new UniMagDriver(new uniMagReader(listener, context, type));
+                } else return new UniMagDriver(new uniMagReader(listener, context));
+            }
+        };
+    }
+
+    @Override
+    public void registerListen() {
+        reader.registerListen();
+    }
+
+    @Override
+    public void unregisterListen() {
+        reader.unregisterListen();
+    }
+
+    @Override
+    public void release() {
+        reader.release();
+    }
+
+    @Override
+    public void setVerboseLoggingEnable(boolean enable) {
+        reader.setVerboseLoggingEnable(enable);
+    }
+
+    @Override
+    public boolean setTimeoutOfSwipeCard(int seconds) {
+        return reader.setTimeoutOfSwipeCard(seconds);
+    }
+
+    @Override
+    public boolean connectWithProfile(StructConfigParameters profile) {
+        return reader.connectWithProfile(profile);
+    }
+
+    @Override
+    public void setXMLFileNameWithPath(String path) {
+        reader.setXMLFileNameWithPath(path);
+    }
+
+    @Override
+    public boolean loadingConfigurationXMLFile(boolean update) {
+        return reader.loadingConfigurationXMLFile(update);
+    }
+
+    @Override
+    public boolean startAutoConfig(String xmlPath, boolean useDefault) {
+        return reader.startAutoConfig(xmlPath, useDefault);
+    }
+
+    @Override
+    public void stopAutoConfig() {
+        reader.stopAutoConfig();
+    }
+
+    @Override
+    public boolean startSwipeCard() {
+        return reader.startSwipeCard();
+    }
+
+    @Override
+    public void stopSwipeCard() {
+        reader.stopSwipeCard();
+    }
+
+    @Override
+    public boolean isSwipeCardRunning() {
+        return reader.isSwipeCardRunning();
+    }
+}
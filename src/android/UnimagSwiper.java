@@ -2,15 +2,26 @@ package com.wodify.cordova.plugin.unimagswiper;
 
 import java.io.File;
 import java.io.InputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import org.json.JSONObject;
 import org.json.JSONArray;
 import org.json.JSONException;
 
 import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
 import android.content.BroadcastReceiver;
 import android.content.Intent;
 import android.content.Context;
@@ -23,9 +34,9 @@ import org.apache.cordova.CallbackContext;
 import org.apache.cordova.CordovaInterface;
 import org.apache.cordova.CordovaPlugin;
 import org.apache.cordova.CordovaWebView;
+import org.apache.cordova.PluginResult;
 
 import IDTech.MSR.XMLManager.StructConfigParameters;
-import IDTech.MSR.uniMag.uniMagReader;
 import IDTech.MSR.uniMag.uniMagReaderMsg;
 import IDTech.MSR.uniMag.uniMagReader.ReaderType;
 
@@ -33,40 +44,188 @@ import IDTech.MSR.uniMag.uniMagReader.ReaderType;
 * This plugin utilizes a Broadcast Receivers to allow for swiping a credit or
 * debit card and returning its parsed data for use in financial transactions.   
 */
-public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
+public class UnimagSwiper extends CordovaPlugin {
 
     // Reference to application context for construction and resource purposes
     private Context context;
 
+    // Bundled XML config file, extracted for the SDK on demand
+    private XMLConfig xmlConfig;
+
     // Broadcast receiver to detect headset events
     private final HeadsetReceiver headsetReceiver = new HeadsetReceiver();
 
-    // Auto Config profile to use for connection on unsupported device
-    private static StructConfigParameters profile = null;
+    // Auto Config profiles to use for connection on unsupported device,
+    // loaded by the preload or on first connection
+    private static volatile ProfileStore profileStore = null;
+
+    // Name of file the Auto Config profiles are stored in
+    private final static String PROFILE_STORE_FILE = "unimag_profiles.bin";
 
-    // Store name of file to retrieve and set Auto Config Profile
+    // Store name of file holding the profile of earlier versions
     private final static String PROFILE_PREFS = "AutoConfigProfile";
 
+    // Device profiles compiled from the XML config file, loaded once
+    private static volatile ProfileIndex profileIndex = null;
+
+    // Name of file the compiled device profiles are stored in
+    private final static String PROFILE_INDEX_FILE = "idt_unimagcfg.idx";
+
+    // Actions that touch the reader, run on the reader thread
+    private final static List<String> READER_ACTIONS = Arrays.asList(
+        "activateReader", "deactivateReader", "swipe", "enableLogs",
+        "setReaderType", "autoConfig", "setPauseGracePeriod",
+        "startContinuousSwipe", "stopContinuousSwipe", "getSwipeStats",
+        "configureSwipeQueue", "ackSwipe", "getMetrics", "setPlugDebounce",
+        "enableSwipeJournal", "ackJournal", "configureDuplicateFilter",
+        "setSwipeTimeout", "configureIdleCycle", "wakeReader");
+
+    // Owns the reader and all fields below, running one task at a time so
+    // JavaScript, SDK and headset events never race each other
+    private final ScheduledExecutorService readerThread = Executors.newSingleThreadScheduledExecutor();
+
+    // Loads profiles and extracts the XML config file off the reader
+    // thread, started by the first activateReader, reader thread only
+    private FutureTask<Void> preload = null;
+
     // Reader from SDK to handle all swipe functionality
-    private uniMagReader reader;
+    private ReaderDriver reader;
+
+    // Receives the callbacks of the current reader, null if there is none
+    private ReaderListener readerListener;
 
-    // Type of uniMagReader for initialization
+    // Creates readers, for physical swipers unless replaced for testing
+    private volatile ReaderDriver.Factory driverFactory;
+
+    // Type of reader for initialization
     private ReaderType readerType;
 
+    // Configured readers of types switched away from, kept to switch back
+    private final Map<ReaderType, ParkedReader> parkedReaders = new HashMap<ReaderType, ParkedReader>();
+
+    // Incremented whenever a stored profile changes, so readers parked with
+    // an older profile are configured again
+    private int profileVersion = 0;
+
     // Indicates if the containing app has not manually deactivated reader
     private boolean readerActivated = false; 
 
-    // Indicates if the SDK has called its connection callback
-    private boolean readerConnected = false;
-
     // Stores user preference, default false
     private boolean enableLogs = false;
 
-    // Indicates if Auto Config process is running
-    private boolean autoConfigRunning = false;
+    // How long the reader stays connected after the app is paused, in
+    // milliseconds, default 0 to release it right away
+    private long pauseGracePeriod = 0;
+
+    // Release of the reader scheduled by onPause, null if none
+    private ScheduledFuture<?> pendingRelease = null;
+
+    // True from onPause to onResume, the reader not being armed meanwhile
+    private boolean paused = false;
+
+    // How long the headset jack must stay in one state before the reader
+    // is started or stopped, in milliseconds
+    private long plugDebounce = 200;
+
+    // Latest headset state and when it was received, applied once settled
+    private boolean pendingPlugged = false;
+    private long pendingPluggedAt = 0;
+    private ScheduledFuture<?> pendingPlug = null;
+
+    // Indicates if the reader is armed again after every card until stopped
+    private boolean continuousSwipe = false;
+
+    // Throughput of continuous swipe mode
+    private final SwipeStats swipeStats = new SwipeStats();
+
+    // Swipe timeout and idle schedule of continuous swipe mode, with the
+    // time the reader spent listening
+    private final DutyCycle dutyCycle = new DutyCycle();
+
+    // Next listening window while idle, null if none
+    private ScheduledFuture<?> pendingArm = null;
+
+    // Swipes waiting for JavaScript to acknowledge them, null to deliver
+    // every swipe right away
+    private SwipeQueue swipeQueue = null;
+
+    // Recognizes cards swiped twice in a row, null if not enabled
+    private DuplicateFilter duplicateFilter = null;
+
+    // Keeps swipes on disk until JavaScript acknowledges them, null if
+    // not enabled
+    private SwipeJournal journal = null;
+
+    // Directory in app storage the swipe journal is kept in
+    private final static String JOURNAL_DIR = "unimag-journal";
+
+    // Current stage of the reader, written on the reader thread only
+    private volatile ReaderState state = ReaderState.RELEASED;
+
+    // Stage to return to once Auto Config ends
+    private ReaderState autoConfigReturnState = ReaderState.DISCONNECTED;
+
+    // Key to store the profile found by Auto Config under
+    private String autoConfigProfileKey = null;
+
+    // Checkpoint of the current Auto Config run, kept when the run is cut
+    // short by a disconnection so it is resumed once the reader is back
+    private boolean autoConfigInterrupted = false;
+    private boolean autoConfigResumed = false;
+    private int autoConfigPercent = 0;
+    private String autoConfigBestProfile = null;
+    private double autoConfigBestScore = 0;
+
+    // Channel kept open by JavaScript to receive events
+    private final EventChannel eventChannel = new EventChannel();
+
+    // Parser for raw card data and its reusable result
+    private final CardParser cardParser = new CardParser();
+    private final CardData parsedCard = new CardData();
+
+    // Decodes swipes from encrypting heads, their masked tracks through
+    // cardParser
+    private final EncryptedTrackDecoder encryptedDecoder = new EncryptedTrackDecoder(cardParser);
+
+    // Writes parsed cards as swipe_success data
+    private final CardEncoder cardEncoder = new CardEncoder();
 
-    // Regex to parse raw card data
-    private Pattern cardParserPtrn = null;
+    // Recent state transitions, events, SDK callbacks and errors
+    private final DiagnosticLog diagnostics = new DiagnosticLog(DIAGNOSTIC_LOG_SIZE);
+
+    // Records kept by the diagnostic log
+    private final static int DIAGNOSTIC_LOG_SIZE = 4096;
+
+    // Prefix of files the diagnostic log is exported to
+    private final static String DIAGNOSTIC_FILE_PREFIX = "unimag-diagnostics-";
+
+    // Latency of each stage of the connect and swipe pipelines
+    private final LatencyHistogram plugToConnecting = new LatencyHistogram();
+    private final LatencyHistogram connectingToConnected = new LatencyHistogram();
+    private final LatencyHistogram processingToCardData = new LatencyHistogram();
+    private final LatencyHistogram cardDataToDelivery = new LatencyHistogram();
+
+    // When the stage being timed started, 0 if none, reader thread only
+    private long pluggedAt = 0;
+    private long connectingAt = 0;
+    private long processingAt = 0;
+
+    // Events counted for metrics, reader thread only
+    private long plugEventCount = 0;
+    private long plugFlapCount = 0;
+    private long timeoutCount = 0;
+    private long swipeErrorCount = 0;
+    private long xmlErrorCount = 0;
+
+    // Time spent in initialize, and from process start until initialize
+    // returned (-1 below Android 7.0), in nanoseconds
+    private long initializeNanos = 0;
+    private long processStartToInitializeNanos = -1;
+
+    // Time the preload ran, and the reader thread waited for it, in
+    // nanoseconds
+    private volatile long preloadNanos = 0;
+    private long preloadWaitNanos = 0;
 
 
     /***************************************************
@@ -79,19 +238,44 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     */
     @Override
     public void initialize(CordovaInterface cordova, CordovaWebView webView) {
+        long start = System.nanoTime();
 
         super.initialize(cordova, webView);
 
-        context = this.cordova.getActivity().getApplicationContext();
+        attach(this.cordova.getActivity().getApplicationContext());
+
+        // Share of app startup taken by the plugin, reported by getMetrics
+        initializeNanos = System.nanoTime() - start;
+        if (Build.VERSION.SDK_INT >= 24) {
+            processStartToInitializeNanos = TimeUnit.MILLISECONDS.toNanos(
+                    SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime());
+        }
+    }
+
+    /**
+    * Sets the plugin up in an application context. Called by initialize,
+    * or directly to run the plugin outside of Cordova, e.g. by
+    * StressBenchmark. Nothing is read from storage here, as this runs on
+    * the main thread while the app starts; see startPreload.
+    *
+    * @param context
+    *        Application context
+    */
+    void attach(Context context) {
+        this.context = context;
+        xmlConfig = new XMLConfig(context, diagnostics);
 
-        cardParserPtrn = Pattern.compile("%B(\\d+)\\^([^\\^]+)\\^(\\d{4})");
+        if (driverFactory == null) {
+            driverFactory = UniMagDriver.factory(context);
+        }
 
-        loadAutoConfigProfile();
+        eventChannel.setDeliveryLatency(cardDataToDelivery);
     }
 
     /**
     * Called when the system is about to start resuming a previous activity.
-    * The reader is killed and Headset Receiver is unregistered.
+    * The reader is killed and Headset Receiver is unregistered, after the
+    * grace period if one was set.
     * 
     * @param multitasking
     *      Flag indicating if multitasking is turned on for app
@@ -100,14 +284,36 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     public void onPause(boolean multitasking) {
         super.onPause(multitasking);
 
-        if (readerActivated) {
-            deactivateReader(null);
-        }
+        post(new Runnable() {
+            @Override
+            public void run() {
+                paused = true;
+
+                if (!readerActivated) {
+                    return;
+                }
+
+                if (pauseGracePeriod > 0) {
+                    // Stay connected in case the app comes right back,
+                    // but no swipe should be read while it is hidden
+                    boolean swipeCancelled = state == ReaderState.SWIPING && !continuousSwipe;
+
+                    cancelSwipe();
+                    scheduleRelease();
+
+                    // Let the pending swipe call end as if it timed out
+                    if (swipeCancelled) {
+                        fireEvent("timeout", "Swipe cancelled, app paused.");
+                    }
+                } else deactivateReader(null);
+            }
+        });
     }
 
     /**
     * Called when the activity will start interacting with the user.
-    * The reader is reinitialized as if the app was just opened.
+    * The reader is kept as is if it is still within its grace period,
+    * otherwise it is reinitialized as if the app was just opened.
     * 
     * @param multitasking
     *      Flag indicating if multitasking is turned on for app
@@ -116,9 +322,58 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     public void onResume(boolean multitasking) {
         super.onResume(multitasking);
 
-        if (readerActivated) {
-            activateReader(null);
-        }
+        post(new Runnable() {
+            @Override
+            public void run() {
+                paused = false;
+
+                if (cancelPendingRelease()) {
+                    // Reader was never released, only stopped listening
+                    wake();
+                    return;
+                }
+
+                if (readerActivated) {
+                    activateReader(null);
+                }
+            }
+        });
+    }
+
+
+    /**
+    * Called when the WebView navigates or reloads. Callbacks registered by
+    * the previous page can no longer be reached.
+    */
+    @Override
+    public void onReset() {
+        super.onReset();
+
+        eventChannel.setSink(null);
+    }
+
+    /**
+    * Called when the plugin is being destroyed along with its activity.
+    */
+    @Override
+    public void onDestroy() {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                deactivateReader(null);
+                eventChannel.shutdown();
+                if (swipeQueue != null) {
+                    swipeQueue.clear();
+                }
+                if (journal != null) {
+                    journal.close();
+                    journal = null;
+                }
+            }
+        });
+        readerThread.shutdown();
+
+        super.onDestroy();
     }
 
 
@@ -140,7 +395,47 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     *      Whether the action was valid.
     */
     @Override
-    public boolean execute(final String action, JSONArray args, final CallbackContext callbackContext) throws JSONException {
+    public boolean execute(final String action, final JSONArray args, final CallbackContext callbackContext) throws JSONException {
+        diagnostics.record(DiagnosticLog.ACTION, action);
+
+        if (READER_ACTIONS.contains(action)) {
+            // Return right away, the reader thread calls back when done
+            post(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        executeReaderAction(action, args, callbackContext);
+                    } catch (JSONException e) {
+                        logError(e);
+                        callbackContext.error("Invalid arguments for '" + action + "'.");
+                    }
+                }
+            });
+        } else if ("registerEventChannel".equals(action)) {
+            registerEventChannel(callbackContext);
+        } else if ("getEncoderStats".equals(action)) {
+            getEncoderStats(callbackContext);
+        } else if ("exportLogs".equals(action)) {
+            exportLogs(callbackContext);
+        } else {
+            // Method not found.
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+    * Executes a request touching the reader, on the reader thread.
+    *
+    * @param action
+    *      The action to execute.
+    * @param args
+    *      The exec() arguments in JSON form.
+    * @param callbackContext
+    *      The callback context used when calling back into JavaScript.
+    */
+    private void executeReaderAction(String action, JSONArray args, CallbackContext callbackContext) throws JSONException {
         if ("activateReader".equals(action)) {
             activateReader(callbackContext);
         } else if ("deactivateReader".equals(action)) {
@@ -157,12 +452,54 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
             } else callbackContext.error("Reader type not specified.");
         } else if ("autoConfig".equals(action)) {
             autoConfig(callbackContext);
-        } else {
-            // Method not found.
-            return false;
+        } else if ("startContinuousSwipe".equals(action)) {
+            startContinuousSwipe(callbackContext);
+        } else if ("stopContinuousSwipe".equals(action)) {
+            stopContinuousSwipe(callbackContext);
+        } else if ("getSwipeStats".equals(action)) {
+            getSwipeStats(callbackContext);
+        } else if ("configureSwipeQueue".equals(action)) {
+            if (args.length() > 1) {
+                configureSwipeQueue(callbackContext, args.getInt(0), args.getString(1));
+            } else callbackContext.error("Queue capacity and policy not specified.");
+        } else if ("setPlugDebounce".equals(action)) {
+            if (args.length() > 0) {
+                setPlugDebounce(callbackContext, args.getLong(0));
+            } else callbackContext.error("Debounce window not specified.");
+        } else if ("getMetrics".equals(action)) {
+            getMetrics(callbackContext);
+        } else if ("ackSwipe".equals(action)) {
+            if (args.length() > 0) {
+                ackSwipe(callbackContext, args.getLong(0));
+            } else callbackContext.error("Swipe id not specified.");
+        } else if ("enableSwipeJournal".equals(action)) {
+            if (args.length() > 0) {
+                enableSwipeJournal(callbackContext, args.getBoolean(0));
+            } else callbackContext.error("Boolean 'enable' not specified.");
+        } else if ("ackJournal".equals(action)) {
+            if (args.length() > 0) {
+                ackJournal(callbackContext, args.getLong(0));
+            } else callbackContext.error("Journal sequence number not specified.");
+        } else if ("configureDuplicateFilter".equals(action)) {
+            if (args.length() > 1) {
+                configureDuplicateFilter(callbackContext, args.getLong(0), args.getString(1));
+            } else callbackContext.error("Duplicate window and mode not specified.");
+        } else if ("setSwipeTimeout".equals(action)) {
+            if (args.length() > 0) {
+                setSwipeTimeout(callbackContext, args.getInt(0));
+            } else callbackContext.error("Swipe timeout not specified.");
+        } else if ("configureIdleCycle".equals(action)) {
+            if (args.length() > 2) {
+                configureIdleCycle(callbackContext, args.getLong(0), args.getInt(1), args.getLong(2));
+            } else callbackContext.error("Idle delay, listening window and maximum sleep not specified.");
+        } else if ("wakeReader".equals(action)) {
+            wake();
+            callbackContext.success();
+        } else if ("setPauseGracePeriod".equals(action)) {
+            if (args.length() > 0) {
+                setPauseGracePeriod(callbackContext, args.getLong(0));
+            } else callbackContext.error("Grace period not specified.");
         }
-
-        return true;
     }
 
     /**
@@ -188,11 +525,14 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
         try {
             context.registerReceiver(headsetReceiver, headsetFilter);
 
+            // Have profiles ready by the time a reader is plugged in
+            startPreload();
+
             if (callbackContext != null) {
                 readerActivated = true;
             }
         } catch(IllegalArgumentException e){
-            e.printStackTrace();
+            logError(e);
             // If we're not going to be able to detect via hardware whether
             // the swipe is plugged in, we can't continue.
             callbackContextMsg = "Failed to activate reader - " +
@@ -212,13 +552,20 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     *        Used when calling back into JavaScript
     */
     private void deactivateReader(final CallbackContext callbackContext) {
+        cancelPendingRelease();
+        cancelPendingPlug();
+
         try {
             context.unregisterReceiver(headsetReceiver);
 
             stopUnimagSwiper();
+            releaseParkedReaders();
 
             if (callbackContext != null) {
                 readerActivated = false;
+
+                // Auto Config is not resumed once the app gives up the reader
+                clearAutoConfigCheckpoint();
             }
         } catch(IllegalArgumentException e){
             // The only reason we could not unregister the Headset 
@@ -226,7 +573,7 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
             // place (i.e., reader is already deactivated). Thus, we
             // don't really care about this exception, our callback
             // will always be for success.
-            e.printStackTrace();
+            logError(e);
         }
 
         sendCallback(callbackContext, null);
@@ -234,17 +581,24 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
 
     /**
     * Tells the SDK to begin expecting a swipe. From the moment this is
-    * called, the user will have 30 seconds to swipe the card before a 
-    * timeout error occurs.
+    * called, the user has the swipe timeout set with setSwipeTimeout, 30
+    * seconds by default, to swipe the card before a timeout error occurs.
     * 
     * @param callbackContext 
     *        Used when calling back into JavaScript
     */
     private void swipe(final CallbackContext callbackContext) {
-        if (reader != null && !autoConfigRunning) {
-            if (readerConnected == true) {
-                cancelSwipe();
-                if (reader.startSwipeCard()) {
+        if (reader != null && state != ReaderState.AUTO_CONFIG) {
+            if (paused) {
+                // Nobody can swipe while the app is hidden
+                callbackContext.error("App is paused.");
+            } else if (isSwipeQueueBlocking()) {
+                // Pause policy, wait for JavaScript to catch up
+                callbackContext.error("Swipe queue is full.");
+            } else if (state == ReaderState.CONNECTED || state == ReaderState.SWIPING) {
+                dutyCycle.recordActivity(System.nanoTime());
+
+                if (armSwipe()) {
                     // If we get this far, we can expect events for card
                     // processing and card data received if a card is 
                     // actually swiped, otherwise we can expect a timeout
@@ -262,6 +616,294 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
         } else callbackContext.error("Reader must be activated before starting swipe.");
     }
 
+    /**
+    * Sets how long the headset jack must stay plugged or unplugged before
+    * the reader is started or stopped, so a loose jack does not rebuild
+    * the reader on every broadcast.
+    *
+    * @param callbackContext 
+    *        Used when calling back into JavaScript
+    * @param millis
+    *        Debounce window in milliseconds, 0 to act on every broadcast
+    */
+    private void setPlugDebounce(final CallbackContext callbackContext, long millis) {
+        if (millis >= 0) {
+            plugDebounce = millis;
+
+            callbackContext.success("Plug debounce set to " + millis + " ms.");
+        } else callbackContext.error("Debounce window must not be negative.");
+    }
+
+    /**
+    * Sets how long the reader waits for a card once armed, for swipe and
+    * for continuous swipe mode while active. Applies from the next time
+    * the reader is armed.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript
+    * @param seconds
+    *        Swipe timeout in seconds, at least 1
+    */
+    private void setSwipeTimeout(final CallbackContext callbackContext, int seconds) {
+        if (seconds >= 1) {
+            dutyCycle.setSwipeTimeout(seconds);
+
+            callbackContext.success("Swipe timeout set to " + seconds + " s.");
+        } else callbackContext.error("Swipe timeout must be at least 1 second.");
+    }
+
+    /**
+    * Lets continuous swipe mode stop listening during quiet periods: once
+    * no card was read and no swipe requested for the idle delay, the
+    * reader only listens for short windows with growing sleeps between
+    * them, or not at all, until there is activity again.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript
+    * @param idleAfterMillis
+    *        Quiet time before going idle in milliseconds, 0 to always
+    *        listen
+    * @param listenSeconds
+    *        Length of the listening windows while idle, in seconds
+    * @param maxSleepMillis
+    *        Longest sleep between listening windows in milliseconds, 0 to
+    *        stop listening until there is activity
+    */
+    private void configureIdleCycle(final CallbackContext callbackContext, long idleAfterMillis,
+                                    int listenSeconds, long maxSleepMillis) {
+        if (idleAfterMillis < 0 || maxSleepMillis < 0) {
+            callbackContext.error("Idle delay and maximum sleep must not be negative.");
+        } else if (listenSeconds < 1) {
+            callbackContext.error("Listening window must be at least 1 second.");
+        } else {
+            dutyCycle.configureIdle(idleAfterMillis, listenSeconds, maxSleepMillis);
+            wake();
+
+            callbackContext.success();
+        }
+    }
+
+    /**
+    * Keeps the reader in swipe mode, arming it again as soon as each card
+    * has been decoded instead of waiting for JavaScript to call swipe.
+    * Continues across reconnections until stopContinuousSwipe is called.
+    * 
+    * @param callbackContext 
+    *        Used when calling back into JavaScript
+    */
+    private void startContinuousSwipe(final CallbackContext callbackContext) {
+        if (!continuousSwipe) {
+            continuousSwipe = true;
+            swipeStats.reset();
+        }
+        dutyCycle.recordActivity(System.nanoTime());
+
+        // Arm now if possible, otherwise it will be armed once connected
+        if (state == ReaderState.CONNECTED && !armSwipe()) {
+            callbackContext.error("Failed to start swipe.");
+        } else callbackContext.success();
+    }
+
+    /**
+    * Leaves continuous swipe mode, cancelling the swipe in progress.
+    * 
+    * @param callbackContext 
+    *        Used when calling back into JavaScript, with the final stats
+    */
+    private void stopContinuousSwipe(final CallbackContext callbackContext) throws JSONException {
+        continuousSwipe = false;
+        cancelSwipe();
+
+        getSwipeStats(callbackContext);
+    }
+
+    /**
+    * Reports the throughput of continuous swipe mode.
+    * 
+    * @param callbackContext 
+    *        Used when calling back into JavaScript
+    */
+    private void getSwipeStats(final CallbackContext callbackContext) throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("continuous", continuousSwipe);
+        stats.put("swipes", swipeStats.getTotalSwipes());
+        stats.put("swipes_per_minute", swipeStats.getSwipesPerMinute(System.nanoTime()));
+        stats.put("last_rearm_ms", swipeStats.getLastRearmMillis());
+        stats.put("mean_rearm_ms", swipeStats.getMeanRearmMillis());
+        stats.put("max_rearm_ms", swipeStats.getMaxRearmMillis());
+
+        if (swipeQueue != null) {
+            stats.put("queued", swipeQueue.size());
+            stats.put("dropped", swipeQueue.getDropped());
+            stats.put("rejected", swipeQueue.getRejected());
+        }
+
+        callbackContext.success(stats);
+    }
+
+    /**
+    * Makes successful swipes wait in a bounded queue until JavaScript
+    * acknowledges them with ackSwipe, delivering one at a time. Swipes
+    * still queued when the queue is reconfigured are discarded.
+    * 
+    * @param callbackContext 
+    *        Used when calling back into JavaScript
+    * @param capacity
+    *        Swipes kept at most, 0 to deliver every swipe right away
+    * @param policy
+    *        What to do when full: "drop_oldest", "reject" or "pause"
+    */
+    private void configureSwipeQueue(final CallbackContext callbackContext, int capacity, String policy) {
+        int queuePolicy = SwipeQueue.parsePolicy(policy);
+
+        if (capacity < 0) {
+            callbackContext.error("Queue capacity must not be negative.");
+        } else if (capacity > 0 && queuePolicy < 0) {
+            callbackContext.error("Queue policy '" + policy + "' invalid.");
+        } else {
+            if (swipeQueue != null) {
+                swipeQueue.clear();
+            }
+            swipeQueue = capacity > 0 ? new SwipeQueue(capacity, queuePolicy) : null;
+
+            callbackContext.success();
+        }
+    }
+
+    /**
+    * Removes swipes JavaScript is done with from the queue, delivering
+    * the next one and arming the reader again if it was paused.
+    * 
+    * @param callbackContext 
+    *        Used when calling back into JavaScript
+    * @param swipeId
+    *        swipe_id of the last swipe consumed
+    */
+    private void ackSwipe(final CallbackContext callbackContext, long swipeId) {
+        if (swipeQueue != null) {
+            boolean wasBlocking = isSwipeQueueBlocking();
+
+            swipeQueue.ack(swipeId);
+            deliverQueuedSwipes();
+
+            if (wasBlocking && continuousSwipe && state == ReaderState.CONNECTED) {
+                armSwipe();
+            }
+
+            callbackContext.success();
+        } else callbackContext.error("Swipe queue is not enabled.");
+    }
+
+    /**
+    * Makes a card swiped again within a time window either dropped or
+    * delivered with duplicate set. Cards are only remembered by a keyed
+    * hash, forgotten when the filter is reconfigured.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript
+    * @param windowMillis
+    *        Window in milliseconds, 0 to turn the filter off
+    * @param mode
+    *        "drop" or "tag"
+    */
+    private void configureDuplicateFilter(final CallbackContext callbackContext, long windowMillis, String mode) {
+        int filterMode = DuplicateFilter.parseMode(mode);
+
+        if (windowMillis < 0) {
+            callbackContext.error("Duplicate window must not be negative.");
+        } else if (windowMillis > 0 && filterMode < 0) {
+            callbackContext.error("Duplicate mode '" + mode + "' invalid.");
+        } else if (windowMillis == 0) {
+            duplicateFilter = null;
+            callbackContext.success();
+        } else {
+            try {
+                duplicateFilter = new DuplicateFilter(windowMillis, filterMode);
+                callbackContext.success();
+            } catch (GeneralSecurityException e) {
+                logError(e);
+                callbackContext.error("Failed to set up duplicate filter.");
+            }
+        }
+    }
+
+    /**
+    * Opens or closes the swipe journal. Once open, every successful swipe
+    * is written to it, encrypted, before swipe_success is fired, and its
+    * journal_seq kept until acknowledged with ackJournal. Entries left
+    * unacknowledged, e.g. by an earlier run of the app, are fired again as
+    * swipe_recovered each time the journal is enabled, apart from those
+    * still in the swipe queue. Closing the journal keeps its entries for
+    * the next time it is enabled. Requires Android 6.0 for its Keystore
+    * key.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript
+    * @param enable
+    *        Whether swipes should be journaled
+    */
+    private void enableSwipeJournal(final CallbackContext callbackContext, boolean enable) {
+        if (!enable) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            callbackContext.success();
+            return;
+        }
+
+        if (Build.VERSION.SDK_INT < 23) {
+            callbackContext.error("Swipe journal requires Android 6.0 or higher.");
+            return;
+        }
+
+        try {
+            if (journal == null) {
+                journal = SwipeJournal.open(new File(context.getFilesDir(), JOURNAL_DIR),
+                                            SwipeJournal.keystoreKey());
+            }
+
+            // Queued swipes are delivered by the queue itself
+            long queuedSeq = swipeQueue != null ? swipeQueue.getFirstJournalSeq() : 0;
+            journal.replay(queuedSeq, new SwipeJournal.Replay() {
+                @Override
+                public void entry(long seq, String json) {
+                    fireEvent("swipe_recovered", json);
+                }
+            });
+
+            callbackContext.success();
+        } catch (Exception e) {
+            logError(e);
+            callbackContext.error("Failed to open swipe journal.");
+        }
+    }
+
+    /**
+    * Acknowledges journaled swipes JavaScript is done with, so the
+    * journal can drop them.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript
+    * @param seq
+    *        journal_seq of the last swipe consumed, earlier ones being
+    *        acknowledged too
+    */
+    private void ackJournal(final CallbackContext callbackContext, long seq) {
+        if (journal == null) {
+            callbackContext.error("Swipe journal is not enabled.");
+            return;
+        }
+
+        try {
+            journal.ack(seq);
+            callbackContext.success();
+        } catch (IOException e) {
+            logError(e);
+            callbackContext.error("Failed to acknowledge journaled swipes.");
+        }
+    }
+
     /**
     * Turns SDK logs on or off.
     * 
@@ -276,7 +918,7 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
 
         // Apply preference now if possible, otherwise it will be
         // applied when swiper is started
-        if (reader != null && !autoConfigRunning) {
+        if (reader != null && state != ReaderState.AUTO_CONFIG) {
             reader.setVerboseLoggingEnable(enableLogs);
         }
 
@@ -294,18 +936,20 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     */
     private void setReaderType(final CallbackContext callbackContext, String type) {
         try {
-            readerType = ReaderType.valueOf(type);
+            ReaderType newType = ReaderType.valueOf(type);
 
             // Apply type now if possible, otherwise it will be
             // applied when swiper is started.
-            if (reader != null && !autoConfigRunning) {
-                stopUnimagSwiper();
+            if (newType != readerType && reader != null && state != ReaderState.AUTO_CONFIG) {
+                // Keep the current reader configured to switch back to it
+                parkReader();
+                readerType = newType;
                 startUnimagSwiper();
-            }
+            } else readerType = newType;
 
             callbackContext.success("Reader type set as '" + readerType.name() + "'.");
         } catch (IllegalArgumentException e) {
-            e.printStackTrace();
+            logError(e);
             callbackContext.error("Reader type '" + type + "' invalid.");
         }
     }
@@ -318,55 +962,313 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
      *        Used when calling back into JavaScript
      */
     private void autoConfig(final CallbackContext callbackContext) {
-        if (reader == null) {
-            startUnimagSwiper();
-        }
-        if (!autoConfigRunning) {
-            cancelSwipe();
-
-            String file = getXMLConfigFile();
-
-            if (reader.startAutoConfig(file, true)) {
-                autoConfigRunning = true;
+        if (state != ReaderState.AUTO_CONFIG) {
+            if (reader == null) {
+                // Also resumes an interrupted run
+                startUnimagSwiper();
+            }
 
+            if (state == ReaderState.AUTO_CONFIG || beginAutoConfig()) {
                 callbackContext.success();
             } else callbackContext.error("Failed to start Auto Config.");
         } else callbackContext.error("Auto Config is already running.");
     }
 
-    /***************************************************
-    * SDK CALLBACKS
-    ***************************************************/
-
-
     /**
-    * Receive messages from the SDK when the device is powering up.
-    * Can result in a timeout rather than an actual connection.
+    * Sets how long the reader stays connected after the app is paused. A
+    * resume within this period finds the reader still connected instead
+    * of waiting for it to power up again.
+    *
+    * @param callbackContext 
+    *        Used when calling back into JavaScript
+    * @param millis
+    *        Grace period in milliseconds, 0 to release right away
     */
-    @Override
-    public void onReceiveMsgToConnect() {
-        fireEvent("connecting");
+    private void setPauseGracePeriod(final CallbackContext callbackContext, long millis) {
+        if (millis >= 0) {
+            pauseGracePeriod = millis;
+
+            callbackContext.success("Pause grace period set to " + millis + " ms.");
+        } else callbackContext.error("Grace period must not be negative.");
     }
 
     /**
-    * Receive messages from the SDK when the swiper is connected to
-    * the device. Swipe cannot be performed until this has been called.
+    * Keeps the given callback to deliver all subsequent events through,
+    * replacing any previously registered one.
+    *
+    * @param callbackContext
+    *        Kept callback receiving batches of events
     */
-    @Override
-    public void onReceiveMsgConnected() {
-        readerConnected = true;
-        fireEvent("connected");
+    private void registerEventChannel(final CallbackContext callbackContext) {
+        eventChannel.setSink(new EventChannel.Sink() {
+            @Override
+            public void send(String messages) {
+                PluginResult result = new PluginResult(PluginResult.Status.OK, messages);
+                result.setKeepCallback(true);
+                callbackContext.sendPluginResult(result);
+            }
+        });
+
+        PluginResult result = new PluginResult(PluginResult.Status.NO_RESULT);
+        result.setKeepCallback(true);
+        callbackContext.sendPluginResult(result);
+
+        // Swipes handed to a previous page were never acknowledged
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (swipeQueue != null) {
+                    swipeQueue.redeliver();
+                    deliverQueuedSwipes();
+                }
+            }
+        });
     }
 
     /**
-    * Receive messages from the SDK when the swiper becomes disconnected
-    * from the device. 
+    * Reports an estimate of how much memory encoding swiped cards costs,
+    * worked out from buffer sizes as Android cannot cheaply measure it.
+    * CardEncoderTest measures the actual allocation on a JVM.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript
     */
-    @Override
-    public void onReceiveMsgDisconnected() {
-        readerConnected = false;
-        autoConfigRunning = false;
-        fireEvent("disconnected"); 
+    private void getEncoderStats(final CallbackContext callbackContext) throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("encoded", cardEncoder.getEncodedCount());
+        stats.put("last_estimated_bytes", cardEncoder.getLastEstimatedBytes());
+        stats.put("estimated_bytes_per_event", cardEncoder.getEstimatedBytesPerEvent());
+
+        callbackContext.success(stats);
+    }
+
+    /**
+    * Reports latency percentiles of each pipeline stage and counts of
+    * failure events since the plugin started.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript
+    */
+    private void getMetrics(final CallbackContext callbackContext) throws JSONException {
+        JSONObject stages = new JSONObject();
+        stages.put("plug_to_connecting", toJSON(plugToConnecting));
+        stages.put("connecting_to_connected", toJSON(connectingToConnected));
+        stages.put("processing_to_card_data", toJSON(processingToCardData));
+        stages.put("card_data_to_delivery", toJSON(cardDataToDelivery));
+
+        JSONObject encoder = new JSONObject();
+        encoder.put("encoded", cardEncoder.getEncodedCount());
+        encoder.put("last_estimated_bytes", cardEncoder.getLastEstimatedBytes());
+        encoder.put("estimated_bytes_per_event", cardEncoder.getEstimatedBytesPerEvent());
+
+        JSONObject metrics = new JSONObject();
+        metrics.put("stages", stages);
+        metrics.put("plug_events", plugEventCount);
+        metrics.put("plug_flaps", plugFlapCount);
+        metrics.put("timeouts", timeoutCount);
+        metrics.put("swipe_errors", swipeErrorCount);
+        metrics.put("xml_errors", xmlErrorCount);
+        metrics.put("duplicates", duplicateFilter != null ? duplicateFilter.getDuplicateCount() : 0);
+        metrics.put("encoder", encoder);
+        metrics.put("startup", startupMetrics());
+        metrics.put("power", powerMetrics());
+        if (journal != null) {
+            metrics.put("journal", journalMetrics());
+        }
+
+        callbackContext.success(metrics);
+    }
+
+    private JSONObject powerMetrics() throws JSONException {
+        long now = System.nanoTime();
+        long listening = dutyCycle.getListeningNanos(now);
+        long waiting = dutyCycle.getWaitingNanos(now);
+
+        JSONObject power = new JSONObject();
+        power.put("phase", DutyCycle.PHASE_NAMES[dutyCycle.getPhase()]);
+        power.put("swipe_timeout_s", dutyCycle.getSwipeTimeoutSeconds());
+        power.put("listening_ms", listening / 1e6);
+        power.put("idle_ms", waiting / 1e6);
+        power.put("listening_share", listening + waiting > 0 ? (double) listening / (listening + waiting) : 0);
+        power.put("idle_periods", dutyCycle.getIdleCount());
+        power.put("wakeups", dutyCycle.getWakeCount());
+        return power;
+    }
+
+    private JSONObject startupMetrics() throws JSONException {
+        JSONObject startup = new JSONObject();
+        startup.put("initialize_ms", initializeNanos / 1e6);
+        startup.put("process_start_to_initialize_ms",
+                    processStartToInitializeNanos >= 0 ? processStartToInitializeNanos / 1e6 : -1);
+        startup.put("preload_ms", preloadNanos / 1e6);
+        startup.put("preload_wait_ms", preloadWaitNanos / 1e6);
+        return startup;
+    }
+
+    private JSONObject journalMetrics() throws JSONException {
+        JSONObject stats = new JSONObject();
+        stats.put("appended", journal.getAppendCount());
+        stats.put("flushes", journal.getFlushCount());
+        stats.put("flush_failures", journal.getFlushFailureCount());
+        stats.put("pending", journal.getPendingCount());
+        stats.put("segments", journal.getSegmentCount());
+        stats.put("unreadable", journal.getUnreadableCount());
+        return stats;
+    }
+
+    private static JSONObject toJSON(LatencyHistogram histogram) throws JSONException {
+        JSONObject stage = new JSONObject();
+        stage.put("count", histogram.getCount());
+        stage.put("p50_ms", histogram.getPercentileMillis(50));
+        stage.put("p99_ms", histogram.getPercentileMillis(99));
+        stage.put("max_ms", histogram.getMaxMillis());
+        return stage;
+    }
+
+    /**
+    * Writes the diagnostic log to a file in app storage on a background
+    * thread, replacing the previous export.
+    *
+    * @param callbackContext
+    *        Used when calling back into JavaScript, with the file path
+    */
+    private void exportLogs(final CallbackContext callbackContext) {
+        final DiagnosticLog.Snapshot snapshot = diagnostics.snapshot();
+
+        cordova.getThreadPool().execute(new Runnable() {
+            @Override
+            public void run() {
+                File file = new File(context.getFilesDir(), DIAGNOSTIC_FILE_PREFIX
+                                     + System.currentTimeMillis() + ".log");
+
+                try {
+                    snapshot.write(file);
+                    deleteOldLogs(file);
+
+                    callbackContext.success(file.getAbsolutePath());
+                } catch (IOException e) {
+                    logError(e);
+                    file.delete();
+                    callbackContext.error("Failed to export logs.");
+                }
+            }
+        });
+    }
+
+    /**
+    * Removes files from earlier exports.
+    *
+    * @param current
+    *        File to keep
+    */
+    private void deleteOldLogs(File current) {
+        File[] files = context.getFilesDir().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().startsWith(DIAGNOSTIC_FILE_PREFIX) && !file.equals(current)) {
+                file.delete();
+            }
+        }
+    }
+
+    /***************************************************
+    * SDK CALLBACKS
+    *
+    * These arrive on SDK threads and are handed to the
+    * reader thread before touching any state. Each is
+    * passed the ReaderListener of the reader making it,
+    * and dropped if that reader is no longer the current
+    * one; see postCallback.
+    ***************************************************/
+
+
+    /**
+    * Receive messages from the SDK when the device is powering up.
+    * Can result in a timeout rather than an actual connection.
+    */
+    private void onReceiveMsgToConnect(final ReaderListener source) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgToConnect");
+
+        final long receivedAt = System.nanoTime();
+
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                if (state != ReaderState.RELEASED) {
+                    if (pluggedAt != 0) {
+                        plugToConnecting.record(receivedAt - pluggedAt);
+                        pluggedAt = 0;
+                    }
+                    connectingAt = receivedAt;
+
+                    fireEvent("connecting");
+                }
+            }
+        });
+    }
+
+    /**
+    * Receive messages from the SDK when the swiper is connected to
+    * the device. Swipe cannot be performed until this has been called.
+    */
+    private void onReceiveMsgConnected(final ReaderListener source) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgConnected");
+
+        final long receivedAt = System.nanoTime();
+
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                // Late callback from a reader that was already released
+                if (state == ReaderState.RELEASED) {
+                    return;
+                }
+
+                if (connectingAt != 0) {
+                    connectingToConnected.record(receivedAt - connectingAt);
+                    connectingAt = 0;
+                }
+
+                if (state == ReaderState.AUTO_CONFIG) {
+                    autoConfigReturnState = ReaderState.CONNECTED;
+                } else setState(ReaderState.CONNECTED);
+
+                fireEvent("connected");
+                dutyCycle.recordActivity(receivedAt);
+
+                if (continuousSwipe && state == ReaderState.CONNECTED) {
+                    armSwipe();
+                }
+            }
+        });
+    }
+
+    /**
+    * Receive messages from the SDK when the swiper becomes disconnected
+    * from the device. 
+    */
+    private void onReceiveMsgDisconnected(final ReaderListener source) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgDisconnected");
+
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                // Disconnection was already reported when reader was released
+                if (state == ReaderState.RELEASED) {
+                    return;
+                }
+
+                // Also ends Auto Config, which is resumed on reconnection
+                if (state == ReaderState.AUTO_CONFIG) {
+                    autoConfigInterrupted = true;
+                }
+                setState(ReaderState.DISCONNECTED);
+                fireEvent("disconnected"); 
+            }
+        });
     }
 
     /**
@@ -380,21 +1282,57 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     * @param strTimeoutMsg 
     *        Message from the SDK
     */
-    @Override
-    public void onReceiveMsgTimeout(String strTimeoutMsg) {
-        if (autoConfigRunning) {
-            autoConfigRunning = false;
-            fireEvent("autoconfig_error", strTimeoutMsg);
-        } else fireEvent("timeout", strTimeoutMsg);
+    private void onReceiveMsgTimeout(final ReaderListener source, final String strTimeoutMsg) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgTimeout", strTimeoutMsg);
+
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                timeoutCount++;
+                connectingAt = 0;
+                processingAt = 0;
+
+                if (state == ReaderState.AUTO_CONFIG) {
+                    setState(autoConfigReturnState);
+                    clearAutoConfigCheckpoint();
+                    fireEvent("autoconfig_error", strTimeoutMsg);
+                } else if (continuousSwipe && state == ReaderState.SWIPING) {
+                    // Nobody swiped in time, keep waiting for the next card
+                    // unless the reader goes idle
+                    setState(ReaderState.CONNECTED);
+
+                    long delay = dutyCycle.onQuietTimeout(System.nanoTime());
+                    if (delay == 0) {
+                        armSwipe();
+                    } else if (delay > 0) {
+                        scheduleArm(delay);
+                    }
+                } else {
+                    if (state == ReaderState.SWIPING) {
+                        setState(ReaderState.CONNECTED);
+                    }
+                    fireEvent("timeout", strTimeoutMsg);
+                }
+            }
+        });
     }
 
     /**
     * Receive messages from the SDK as soon as it detects data coming 
     * from the swiper after startSwipeCard() API method is called.
     */
-    @Override
-    public void onReceiveMsgProcessingCardData() {
-        fireEvent("swipe_processing");
+    private void onReceiveMsgProcessingCardData(final ReaderListener source) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgProcessingCardData");
+
+        final long receivedAt = System.nanoTime();
+
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                processingAt = receivedAt;
+                fireEvent("swipe_processing");
+            }
+        });
     }
 
     /**
@@ -405,14 +1343,67 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     * @param cardData
     *        Raw card data to be parsed
     */
-    @Override
-    public void onReceiveMsgCardData(byte flagOfCardData, byte[] cardData) {
-        cancelSwipe();
+    private void onReceiveMsgCardData(final ReaderListener source, final byte flagOfCardData, final byte[] cardData) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgCardData");
+
+        final long receivedAt = System.nanoTime();
+
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                cancelSwipe();
+                dutyCycle.recordActivity(receivedAt);
+
+                if (processingAt != 0) {
+                    processingToCardData.record(receivedAt - processingAt);
+                    processingAt = 0;
+                }
+
+                boolean parsed = (flagOfCardData & EncryptedTrackDecoder.ENCRYPTED_FLAG) != 0
+                        ? encryptedDecoder.decode(cardData, parsedCard)
+                        : cardParser.parse(cardData, parsedCard);
+
+                boolean dropped = parsed && isDroppedDuplicate(receivedAt);
+
+                // Journaled before being queued or fired, unless the queue
+                // is about to reject it
+                if (parsed && !dropped && journal != null && (swipeQueue == null || swipeQueue.accepts())) {
+                    journalSwipe();
+                }
+
+                // Queued before re-arming so a full queue can pause the reader
+                long swipeId = parsed && !dropped && swipeQueue != null ? swipeQueue.offer(parsedCard, receivedAt) : 0;
 
-        JSONObject card = parseCardData(new String(cardData));
-        if (card != null) {
-            fireEvent("swipe_success", card.toString());   
-        } else fireEvent("swipe_error");
+                if (continuousSwipe) {
+                    swipeStats.recordSwipe(receivedAt);
+
+                    // Ready the reader for the next card before delivering
+                    // this one
+                    if (state == ReaderState.CONNECTED && armSwipe()) {
+                        swipeStats.recordRearm(System.nanoTime() - receivedAt);
+                    }
+                }
+
+                if (!parsed) {
+                    swipeErrorCount++;
+                    fireEvent("swipe_error");
+                } else if (dropped) {
+                    // The swipe JavaScript asked for is still owed a card
+                    if (!continuousSwipe && state == ReaderState.CONNECTED) {
+                        armSwipe();
+                    }
+                } else if (swipeQueue == null) {
+                    fireEvent("swipe_success", cardEncoder.set(parsedCard), receivedAt);
+                } else if (swipeId < 0) {
+                    fireEvent("swipe_rejected");
+                } else deliverQueuedSwipes();
+
+                // Events are encoded as they are fired, so the card is no
+                // longer needed outside the swipe queue
+                parsedCard.wipe();
+                Arrays.fill(cardData, (byte) 0);
+            }
+        });
     }
 
     /**
@@ -422,8 +1413,9 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     * @param strMessage
     *        Description of error.
     */
-    @Override
-    public void onReceiveMsgFailureInfo(int index, String strMessage) {
+    private void onReceiveMsgFailureInfo(final ReaderListener source, int index, final String strMessage) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgFailureInfo", strMessage);
+
         // Possible errors:
         //      - This phone model is not supported by the SDK.
         //      - Wrong XML file name.
@@ -434,7 +1426,13 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
         //      - Failed to increase media volume.
         //          NOTE: This can occur after starting
         //          Auto Config.
-        fireEvent("xml_error", strMessage);
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                xmlErrorCount++;
+                fireEvent("xml_error", strMessage);
+            }
+        });
     }
 
     /**
@@ -446,8 +1444,7 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     * @return
     *         True if task is identifiable
     */
-    @Override 
-    public boolean getUserGrant(int nType, String strMessage) {
+    private boolean getUserGrant(int nType, String strMessage) {
         switch (nType)
         {
             case uniMagReaderMsg.typeToPowerupUniMag:
@@ -477,47 +1474,113 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
      * @param profile 
      *        Profile found by Auto Config, used to connect with
      */
-    @Override
-    public void onReceiveMsgAutoConfigCompleted(StructConfigParameters profile) {
-        autoConfigRunning = false;
-        // Store profile locally
-        this.profile = profile;
-        
-        // Store profile in SharedPrefences for persistence
-        boolean storeSuccess = storeAutoConfigProfile(profile);
+    private void onReceiveMsgAutoConfigCompleted(final ReaderListener source, final StructConfigParameters profile) {
+        diagnostics.record(DiagnosticLog.SDK, "onReceiveMsgAutoConfigCompleted");
+
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                if (state == ReaderState.AUTO_CONFIG) {
+                    setState(autoConfigReturnState);
+                }
+                clearAutoConfigCheckpoint();
+
+                // Store profile for this device, OS version and reader type
+                boolean storeSuccess = storeAutoConfigProfile(profile);
 
-        if (storeSuccess) {
-            fireEvent("autoconfig_completed");
+                if (storeSuccess) {
+                    fireEvent("autoconfig_completed");
 
-            // Totally reset reader to apply profile
-            deactivateReader(null);
-            activateReader(null);
-        } else fireEvent("autoconfig_error", "Failed to save profile.");
+                    // Totally reset reader to apply profile
+                    deactivateReader(null);
+                    activateReader(null);
+                } else fireEvent("autoconfig_error", "Failed to save profile.");
+            }
+        });
     }
 
-    /***************************************************
-    * UNUSED SDK CALLBACKS
-    ***************************************************/
+    /**
+    * Receive messages from the SDK as Auto Config moves through its
+    * candidate settings.
+    * @param progressValue
+    *        Percent of the candidates tried
+    */
+    private void onReceiveMsgAutoConfigProgress(final ReaderListener source, final int progressValue) {
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                reportAutoConfigProgress(progressValue, null, 0);
+            }
+        });
+    }
 
+    /**
+    * Receive messages from the SDK as Auto Config tests a candidate.
+    * Not sent by every SDK version.
+    * @param percent
+    *        Percent of the candidates tried
+    * @param result
+    *        Score of the candidate
+    * @param profileName
+    *        Name of the candidate
+    */
+    private void onReceiveMsgAutoConfigProgress(final ReaderListener source, final int percent,
+                                                final double result, final String profileName) {
+        postCallback(source, new Runnable() {
+            @Override
+            public void run() {
+                reportAutoConfigProgress(percent, profileName, result);
+            }
+        });
+    }
 
-    @Override
-    public void onReceiveMsgToSwipeCard() {}
+    /***************************************************
+    * DRIVER
+    ***************************************************/
 
-    @Override
-    public void onReceiveMsgCommandResult(int commandID, byte[] cmdReturn) {}
 
-    @Override
-    public void onReceiveMsgToCalibrateReader() {}
+    /**
+    * Replaces the driver readers are created with, e.g. by the JVM
+    * tests' SimulatedDriver factory to run the plugin without a swiper.
+    * Takes effect the next time a reader is configured.
+    *
+    * @param factory
+    *        Creates drivers from now on
+    */
+    void setDriverFactory(ReaderDriver.Factory factory) {
+        driverFactory = factory;
+    }
 
-    @Override
-    public void onReceiveMsgAutoConfigProgress(int progressValue) {}
+    /**
+    * Handles a headset plug as if broadcast by the system, for a
+    * simulated reader to be attached or detached.
+    *
+    * @param plugged
+    *        True if the reader was plugged in
+    */
+    void simulateHeadsetPlug(final boolean plugged) {
+        final long receivedAt = System.nanoTime();
 
-    @Override
-    public void onReceiveMsgAutoConfigProgress(int percent, double result, String profileName) {}
+        post(new Runnable() {
+            @Override
+            public void run() {
+                onHeadsetPlug(plugged, receivedAt);
+            }
+        });
+    }
 
-    @Override
-    @Deprecated
-    public void onReceiveMsgSDCardDFailed(String strMSRData) {}
+    /**
+    * Handles card data as if read by the current reader, for a swipe
+    * injected without going through a driver.
+    *
+    * @param flagOfCardData
+    *        Indicates format of cardData
+    * @param cardData
+    *        Raw card data, wiped once parsed
+    */
+    void simulateCardData(byte flagOfCardData, byte[] cardData) {
+        onReceiveMsgCardData(null, flagOfCardData, cardData);
+    }
 
 
     /***************************************************
@@ -525,207 +1588,859 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     ***************************************************/
 
     /**
-    * Initializes uniMagReader object and configures its settings.
+    * Initializes reader and configures its settings.
     */
     private void startUnimagSwiper() {
-        // If there is an existing uniMagReader object, kill it.
+        // If there is an existing reader, kill it.
         stopUnimagSwiper();
 
-        // Init with type if possible
-        if (readerType != null) {
-            reader = new uniMagReader(this, context, readerType);
-        } else reader = new uniMagReader(this, context);
+        // Reuse a reader of this type configured earlier if possible
+        if (!unparkReader()) {
+            configureNewReader();
+        }
+
+        // Pick up an Auto Config run cut short by a disconnection
+        if (autoConfigInterrupted && !beginAutoConfig()) {
+            clearAutoConfigCheckpoint();
+            fireEvent("autoconfig_error", "Failed to resume Auto Config.");
+        }
+    }
+
+    /**
+    * Creates a reader of the current type and loads the settings
+    * to connect with.
+    */
+    private void configureNewReader() {
+        readerListener = new ReaderListener();
+        reader = driverFactory.create(readerListener, readerType);
+
+        setState(ReaderState.DISCONNECTED);
 
         // Begin listening to SDK events.
         reader.registerListen();
         reader.setVerboseLoggingEnable(enableLogs);
-        reader.setTimeoutOfSwipeCard(30); // seconds 
+        reader.setTimeoutOfSwipeCard(dutyCycle.getSwipeTimeoutSeconds());
+
+        StructConfigParameters profile = getStoredProfile();
 
         if (profile == null) {
-            // XML file is used by SDK to retrieve device-specific settings
-            // for the swiper. It is stored within this plugin's resources
-            // but may also be downloaded from the ID Tech web server.
-            reader.setXMLFileNameWithPath(getXMLConfigFile());
-            reader.loadingConfigurationXMLFile(false);
+            StructConfigParameters indexedProfile = getIndexedProfile();
+
+            if (indexedProfile != null) {
+                // Device is listed in the XML file, so connect with its
+                // settings directly rather than having the SDK parse it
+                reader.connectWithProfile(indexedProfile);
+            } else {
+                // XML file is used by SDK to retrieve device-specific settings
+                // for the swiper. It is stored within this plugin's resources
+                // but may also be downloaded from the ID Tech web server.
+                // The preload may still be extracting it.
+                awaitPreload();
+                reader.setXMLFileNameWithPath(xmlConfig.getFile());
+                reader.loadingConfigurationXMLFile(false);
+            }
         } else {
             // Device is not supported and must use profile from Auto Config
             reader.connectWithProfile(profile);
         }
     }
+
+    /**
+    * Sets the current reader aside without releasing it, so switching
+    * back to its type skips creating and configuring a new one. No
+    * disconnection event is fired, the reader of the new type reports
+    * its own connection.
+    */
+    private void parkReader() {
+        cancelSwipe();
+
+        // Stop listening to SDK events, the reader keeps its settings
+        reader.unregisterListen();
+
+        ParkedReader previous = parkedReaders.put(readerType,
+                new ParkedReader(reader, readerListener, profileVersion));
+        if (previous != null) {
+            previous.reader.release();
+        }
+
+        // Callbacks it still makes are dropped until it is unparked
+        reader = null;
+        readerListener = null;
+        setState(ReaderState.RELEASED);
+    }
+
+    /**
+    * Makes the parked reader of the current type the active one, if its
+    * settings are still current.
+    * @return
+    *     True if a parked reader was reused
+    */
+    private boolean unparkReader() {
+        ParkedReader parked = parkedReaders.remove(readerType);
+
+        if (parked == null) {
+            return false;
+        }
+        if (parked.profileVersion != profileVersion) {
+            // Configured with a profile that has since been replaced
+            parked.reader.release();
+            return false;
+        }
+
+        reader = parked.reader;
+        readerListener = parked.listener;
+        setState(ReaderState.DISCONNECTED);
+
+        // Listening again picks up the attached reader and powers it up
+        reader.registerListen();
+        reader.setVerboseLoggingEnable(enableLogs);
+
+        return true;
+    }
+
+    /**
+    * Releases readers of types switched away from.
+    */
+    private void releaseParkedReaders() {
+        for (ParkedReader parked : parkedReaders.values()) {
+            parked.reader.release();
+        }
+        parkedReaders.clear();
+    }
     
     /** 
-    * Releases uniMagReader object.
+    * Releases reader.
     */
     private void stopUnimagSwiper() {
         if (reader != null) {
+            if (state == ReaderState.AUTO_CONFIG) {
+                reader.stopAutoConfig();
+                autoConfigInterrupted = true;
+            }
             cancelSwipe();
 
             // Stop listening to SDK events
             reader.unregisterListen();
             reader.release();
             reader = null;
+            readerListener = null;
 
             // Mock disconnection event
-            readerConnected = false;
+            setState(ReaderState.RELEASED);
             fireEvent("disconnected");
         }
     }
 
     /**
-    * Cancels a swipe if currently in swipe mode.
+    * Starts Auto Config on the current reader, resuming from the
+    * checkpoint of an interrupted run if there is one. The SDK has no way
+    * to skip candidates, so a resumed run tries them again but keeps the
+    * best candidate and furthest progress reported so far.
+    * @return
+    *     True if Auto Config started
     */
-    private void cancelSwipe() {
-        if(reader.isSwipeCardRunning()) {
-            reader.stopSwipeCard();
+    private boolean beginAutoConfig() {
+        cancelSwipe();
+        awaitPreload();
+
+        if (!reader.startAutoConfig(xmlConfig.getFile(), true)) {
+            return false;
         }
+
+        autoConfigReturnState = state;
+        if (!autoConfigInterrupted) {
+            autoConfigProfileKey = getProfileKey();
+        }
+        autoConfigResumed = autoConfigInterrupted;
+        autoConfigInterrupted = false;
+        setState(ReaderState.AUTO_CONFIG);
+
+        if (autoConfigResumed) {
+            reportAutoConfigProgress(0, null, 0);
+        }
+
+        return true;
     }
 
     /**
-    * Uses a regex to parse raw card data.
-    * @param  data
-    *         Raw card data
-    * @return
-    *         Parsed card data or null if invalid
+    * Updates the Auto Config checkpoint and fires an autoconfig_progress
+    * event with it.
+    * @param percent
+    *        Percent of the candidates tried in this run
+    * @param profileName
+    *        Name of the candidate tested, or null if not known
+    * @param score
+    *        Score of the candidate tested
     */
-    private JSONObject parseCardData(String data) {
-        Matcher mtchr = cardParserPtrn.matcher(data);
+    private void reportAutoConfigProgress(int percent, String profileName, double score) {
+        if (state != ReaderState.AUTO_CONFIG) {
+            return;
+        }
 
-        String num = null;
-        String[] name = new String[2];
-        String exp = null;
+        autoConfigPercent = Math.max(autoConfigPercent, percent);
 
-        while (mtchr.find()) {
-            num = mtchr.group(1);
-            name = mtchr.group(2).split("/");
-            exp = mtchr.group(3);
-        } 
+        if (profileName != null && (autoConfigBestProfile == null || score > autoConfigBestScore)) {
+            autoConfigBestProfile = profileName;
+            autoConfigBestScore = score;
+        }
 
-        if (num != null && name[0] != null && name[1] != null && exp != null) {
-            try {
-                JSONObject cardData = new JSONObject();
-                cardData.put("card_number", num);
-                cardData.put("expiry_month", exp.substring(2));
-                cardData.put("expiry_year", exp.substring(0, 2));
-                cardData.put("first_name", name[1].trim());
-                cardData.put("last_name", name[0].trim());
-                cardData.put("trimmedUnimagData", data.replaceAll("\\s",""));
-
-                return cardData;
-            } catch (JSONException e) {
-                e.printStackTrace();
-                return null;
+        try {
+            JSONObject progress = new JSONObject();
+            progress.put("percent", percent);
+            progress.put("furthest_percent", autoConfigPercent);
+            if (profileName != null) {
+                progress.put("profile_name", profileName);
+                progress.put("score", score);
             }
-        } else return null;
+            if (autoConfigBestProfile != null) {
+                progress.put("best_profile_name", autoConfigBestProfile);
+                progress.put("best_score", autoConfigBestScore);
+            }
+            progress.put("resumed", autoConfigResumed);
+
+            fireEvent("autoconfig_progress", progress.toString());
+        } catch (JSONException e) {
+            logError(e);
+        }
     }
 
     /**
-    * Find path to XML configuration file for swiper.
-    * @return 
-    *     File name with path.
+    * Forgets the Auto Config checkpoint once a run has ended.
     */
-    private String getXMLConfigFile() {
-        String fileName = "IDT_uniMagCfg.xml";
+    private void clearAutoConfigCheckpoint() {
+        autoConfigInterrupted = false;
+        autoConfigResumed = false;
+        autoConfigPercent = 0;
+        autoConfigBestProfile = null;
+        autoConfigBestScore = 0;
+    }
 
-        try {
-            int resId = context.getResources().getIdentifier("idt_unimagcfg","raw", 
-                                                    context.getPackageName());
-            InputStream in = context.getResources().openRawResource(resId);
-            byte [] buffer = new byte[in.available()];
-            in.read(buffer);
-            in.close();
+    /**
+    * Takes note of a headset broadcast, acting on it once no other
+    * broadcast arrived for the debounce window. A broadcast cutting short
+    * the window of a previous one counts as a flap.
+    * @param plugged
+    *     True if something was plugged into the headset jack
+    * @param receivedAt
+    *     When the broadcast arrived
+    */
+    private void onHeadsetPlug(boolean plugged, long receivedAt) {
+        plugEventCount++;
 
-            context.deleteFile(fileName);
+        if (cancelPendingPlug()) {
+            plugFlapCount++;
+        }
 
-            FileOutputStream out = context.openFileOutput(fileName, Context.MODE_PRIVATE);
-            out.write(buffer);
-            out.close();
+        pendingPlugged = plugged;
+        pendingPluggedAt = receivedAt;
 
-            File fileDir = context.getFilesDir();
-            String fileNameWithPath = fileDir.getParent() + File.separator + 
-                                        fileDir.getName() + File.separator + fileName;
+        if (plugDebounce == 0) {
+            applyHeadsetPlug();
+            return;
+        }
 
-            File xmlConfigFile = new File(fileNameWithPath);
-            return xmlConfigFile.exists() ? fileNameWithPath : null;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+        try {
+            pendingPlug = readerThread.schedule(guard(new Runnable() {
+                @Override
+                public void run() {
+                    pendingPlug = null;
+                    applyHeadsetPlug();
+                }
+            }), plugDebounce, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Plugin has been destroyed
+            logError(e);
         }
     }
 
     /**
-     * Store profile retrieved by Auto Config process in SharedPreferences so
-     * it can be loaded each time app is opened.
-     *
-     * @param profile
-     *        Profile from Auto Config
-     * @return
-     *         True if store was successful
-     */
-    private boolean storeAutoConfigProfile(StructConfigParameters profile) {
-        // Check that profile is valid
-        if (profile == null) {
-            return false;
+    * Starts or stops the reader for the settled headset state, unless it
+    * is already in that state.
+    */
+    private void applyHeadsetPlug() {
+        try {
+            if (pendingPlugged) {
+                // Swiper was plugged in
+                if (reader == null) {
+                    pluggedAt = pendingPluggedAt;
+                    startUnimagSwiper();
+                }
+            } else {
+                // Swiper was unplugged
+                stopUnimagSwiper();
+            }
+        } catch(Exception e) {
+            logError(e);
+            stopUnimagSwiper();
         }
+    }
 
-        // Create or open SharedPreferences file
-        SharedPreferences.Editor profileEditor = context.getSharedPreferences(PROFILE_PREFS, Context.MODE_PRIVATE).edit();
-
-        profileEditor.putInt("direction_output_wave", profile.getDirectionOutputWave());
-        profileEditor.putInt("frequence_input", profile.getFrequenceInput());
-        profileEditor.putInt("frequence_output", profile.getFrequenceOutput());
-        profileEditor.putInt("record_buffer_size", profile.getRecordBufferSize());
-        profileEditor.putInt("record_read_buffer_size", profile.getRecordReadBufferSize());
-        profileEditor.putInt("wave_direction", profile.getWaveDirection());
-        profileEditor.putInt("high_threshold", profile.gethighThreshold());
-        profileEditor.putInt("low_threshold", profile.getlowThreshold());
-        profileEditor.putInt("min", profile.getMin());
-        profileEditor.putInt("max", profile.getMax());
-        profileEditor.putInt("baud_rate", profile.getBaudRate());
-        profileEditor.putInt("pre_amble_factor", profile.getPreAmbleFactor());
-        profileEditor.putInt("shuttle_channel", profile.getShuttleChannel() & 0xff);
-        profileEditor.putInt("force_headset_plug", profile.getForceHeadsetPlug());
-        profileEditor.putInt("use_voice_recognition", profile.getUseVoiceRecognition());
-        profileEditor.putInt("volume_level_adjust", profile.getVolumeLevelAdjust());
+    /**
+    * Drops a headset broadcast still waiting for its debounce window.
+    * @return
+    *     True if one was waiting
+    */
+    private boolean cancelPendingPlug() {
+        if (pendingPlug == null) {
+            return false;
+        }
 
-        return profileEditor.commit();
+        pendingPlug.cancel(false);
+        pendingPlug = null;
+        return true;
     }
 
     /**
-     * Loads profile retrieved by Auto Config process into app via 
-     * SharedPreferences.
-     */
-    private void loadAutoConfigProfile() {
-        SharedPreferences profilePrefs = context.getSharedPreferences(PROFILE_PREFS, Context.MODE_PRIVATE);
+    * Puts the connected reader in swipe mode.
+    * @return
+    *     True if the reader is waiting for a card
+    */
+    private boolean armSwipe() {
+        cancelSwipe();
+
+        // Continuous swipe mode resumes once the app is back
+        if (paused || isSwipeQueueBlocking()) {
+            return false;
+        }
 
-        if (profilePrefs.getInt("frequence_input", 0) != 0) {
-            profile = new StructConfigParameters();
+        // Shorter while idle, so the reader only listens for a window
+        reader.setTimeoutOfSwipeCard(dutyCycle.getArmTimeoutSeconds());
 
-            profile.setDirectionOutputWave((short) profilePrefs.getInt("direction_output_wave", 0));
-            profile.setFrequenceInput(profilePrefs.getInt("frequence_input", 0));
-            profile.setFrequenceOutput(profilePrefs.getInt("frequence_output", 0));
-            profile.setRecordBufferSize(profilePrefs.getInt("record_buffer_size", 0));
-            profile.setRecordReadBufferSize(profilePrefs.getInt("record_read_buffer_size", 0));
-            profile.setWaveDirection(profilePrefs.getInt("wave_direction", 0));
-            profile.sethighThreshold((short) profilePrefs.getInt("high_threshold", 0));
-            profile.setlowThreshold((short) profilePrefs.getInt("low_threshold", 0));
-            profile.setMin((short) profilePrefs.getInt("min", 0));
-            profile.setMax((short) profilePrefs.getInt("max", 0));
-            profile.setBaudRate(profilePrefs.getInt("baud_rate", 0));
-            profile.setPreAmbleFactor((short) profilePrefs.getInt("pre_amble_factor", 0));
-            profile.setShuttleChannel((byte) profilePrefs.getInt("shuttle_channel", 0));
-            profile.setForceHeadsetPlug((short) profilePrefs.getInt("force_headset_plug", 0));
-            profile.setUseVoiceRecognition((short) profilePrefs.getInt("use_voice_recognition", 0));
-            profile.setVolumeLevelAdjust((short) profilePrefs.getInt("volume_level_adjust", 0));
+        if (reader.startSwipeCard()) {
+            setState(ReaderState.SWIPING);
+            return true;
         }
+        return false;
     }
 
     /**
-     * Perform either a success or error callback on given CallbackContext
-     * depending on state of msg.
-     * @param callbackContext
-     *        Used when calling back into JavaScript
-     * @param msg
-     *        Error message, or null if success
+    * Checks the parsed card against the duplicate filter, tagging it if
+    * duplicates are to be delivered.
+    *
+    * @param receivedAt
+    *        When the card data arrived
+    * @return
+    *        True if the card is a duplicate to drop
+    */
+    private boolean isDroppedDuplicate(long receivedAt) {
+        if (duplicateFilter == null || parsedCard.panLength == 0) {
+            return false;
+        }
+
+        try {
+            if (!duplicateFilter.check(parsedCard, receivedAt)) {
+                return false;
+            }
+        } catch (GeneralSecurityException e) {
+            logError(e);
+            return false;
+        }
+
+        if (duplicateFilter.getMode() == DuplicateFilter.DROP) {
+            return true;
+        }
+        parsedCard.duplicate = true;
+        return false;
+    }
+
+    /**
+    * Appends the parsed card to the journal, numbering it. The swipe is
+    * still delivered if the journal fails, only without journal_seq.
+    */
+    private void journalSwipe() {
+        parsedCard.journalSeq = journal.getNextSeq();
+
+        try {
+            journal.append(cardEncoder.set(parsedCard));
+        } catch (Exception e) {
+            logError(e);
+            parsedCard.journalSeq = 0;
+        }
+    }
+
+    /**
+    * Whether the reader must not be armed until JavaScript acknowledges
+    * a queued swipe.
+    */
+    private boolean isSwipeQueueBlocking() {
+        return swipeQueue != null && swipeQueue.getPolicy() == SwipeQueue.PAUSE && swipeQueue.isFull();
+    }
+
+    /**
+    * Fires swipe_success for queued swipes, as many as the queue allows
+    * to wait for acknowledgement.
+    */
+    private void deliverQueuedSwipes() {
+        int slot;
+
+        while ((slot = swipeQueue.takeForDelivery()) >= 0) {
+            fireEvent("swipe_success", cardEncoder.set(swipeQueue.cardAt(slot), swipeQueue.idAt(slot)),
+                      swipeQueue.receivedAt(slot));
+        }
+    }
+
+    /**
+    * Cancels a swipe if currently in swipe mode.
+    */
+    private void cancelSwipe() {
+        if (pendingArm != null) {
+            pendingArm.cancel(false);
+            pendingArm = null;
+        }
+
+        if (reader != null && reader.isSwipeCardRunning()) {
+            reader.stopSwipeCard();
+        }
+
+        if (state == ReaderState.SWIPING) {
+            setState(ReaderState.CONNECTED);
+        }
+    }
+
+    /**
+    * Prints an exception and keeps it in the diagnostic log.
+    *
+    * @param e
+    *        Exception caught
+    */
+    private void logError(Exception e) {
+        diagnostics.recordError(e);
+    }
+
+    /**
+    * Moves the reader to its next stage. Only called on the reader thread.
+    *
+    * @param next
+    *        New stage of the reader
+    */
+    private void setState(ReaderState next) {
+        if (next != state) {
+            diagnostics.record(DiagnosticLog.STATE, next.name());
+            dutyCycle.recordReaderState(next == ReaderState.SWIPING, next == ReaderState.SWIPING
+                                        || next == ReaderState.CONNECTED, System.nanoTime());
+        }
+        state = next;
+    }
+
+    /**
+    * Runs a task on the reader thread. Tasks run one at a time, in the
+    * order they were posted.
+    *
+    * @param task
+    *        Task touching the reader or its state
+    */
+    private void post(Runnable task) {
+        try {
+            readerThread.execute(guard(task));
+        } catch (RejectedExecutionException e) {
+            // Plugin has been destroyed
+            logError(e);
+        }
+    }
+
+    /**
+    * Runs the handling of an SDK callback on the reader thread, unless
+    * the reader that made it is no longer the current one by then.
+    *
+    * @param source
+    *        Listener of the reader making the callback, null for the
+    *        current reader whatever it is, e.g. for a simulated swipe
+    * @param task
+    *        Handling of the callback
+    */
+    private void postCallback(final ReaderListener source, final Runnable task) {
+        post(new Runnable() {
+            @Override
+            public void run() {
+                if (source != null && source != readerListener) {
+                    diagnostics.record(DiagnosticLog.SDK, "stale callback dropped");
+                    return;
+                }
+                task.run();
+            }
+        });
+    }
+
+    /**
+    * Wraps a reader thread task so a failing task cannot kill the thread.
+    */
+    private Runnable guard(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // Keep the reader thread alive for later tasks
+                    logError(e);
+                }
+            }
+        };
+    }
+
+    /**
+    * Arms the reader for its next listening window once the idle sleep
+    * ends, unless cancelled first. Only called on the reader thread.
+    *
+    * @param delayNanos
+    *        Length of the sleep
+    */
+    private void scheduleArm(long delayNanos) {
+        try {
+            pendingArm = readerThread.schedule(guard(new Runnable() {
+                @Override
+                public void run() {
+                    pendingArm = null;
+                    if (continuousSwipe && state == ReaderState.CONNECTED) {
+                        armSwipe();
+                    }
+                }
+            }), delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Plugin has been destroyed
+            logError(e);
+        }
+    }
+
+    /**
+    * Records activity, making sure the reader listens right away with the
+    * full swipe timeout in continuous swipe mode.
+    */
+    private void wake() {
+        boolean woke = dutyCycle.recordActivity(System.nanoTime());
+
+        // A listening window in progress is restarted with the full timeout
+        if (continuousSwipe && (state == ReaderState.CONNECTED || woke && state == ReaderState.SWIPING)) {
+            armSwipe();
+        }
+    }
+
+    /**
+    * Releases the reader once the grace period ends, unless the app is
+    * resumed first. Only called on the reader thread.
+    */
+    private void scheduleRelease() {
+        cancelPendingRelease();
+
+        try {
+            pendingRelease = readerThread.schedule(guard(new Runnable() {
+                @Override
+                public void run() {
+                    pendingRelease = null;
+                    deactivateReader(null);
+                }
+            }), pauseGracePeriod, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // Plugin has been destroyed
+            logError(e);
+        }
+    }
+
+    /**
+    * Keeps the reader if its release was scheduled. Only called on the
+    * reader thread.
+    * @return
+    *     True if a release was pending
+    */
+    private boolean cancelPendingRelease() {
+        if (pendingRelease == null) {
+            return false;
+        }
+
+        pendingRelease.cancel(false);
+        pendingRelease = null;
+        return true;
+    }
+
+    /**
+    * Starts loading the stored profiles and the profile index on a
+    * background thread, and extracting the XML config file if this device
+    * is not indexed, unless already started. Readers configured later wait
+    * for this single load rather than reading storage again.
+    */
+    private void startPreload() {
+        if (preload != null) {
+            return;
+        }
+
+        final String readerCode = getReaderCode(readerType);
+
+        preload = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+
+                if (profileStore == null) {
+                    profileStore = loadProfileStore();
+                }
+                if (profileIndex == null) {
+                    profileIndex = loadProfileIndex();
+                }
+                if (profileIndex == null
+                        || profileIndex.lookup(Build.MANUFACTURER, Build.MODEL, readerCode) == null) {
+                    // The SDK will be handed the XML file
+                    xmlConfig.getFile();
+                }
+
+                preloadNanos = System.nanoTime() - start;
+            }
+        }, null);
+
+        // Outside of Cordova, e.g. in StressBenchmark, there is no pool
+        if (cordova != null) {
+            cordova.getThreadPool().execute(preload);
+        } else new Thread(preload, "unimag-preload").start();
+    }
+
+    /**
+    * Waits for the preload to finish if it was started. Profiles it
+    * failed to load are loaded again by the caller.
+    */
+    private void awaitPreload() {
+        if (preload == null || preload.isDone()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            preload.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logError(e);
+        }
+        preloadWaitNanos += System.nanoTime() - start;
+    }
+
+    /**
+    * Names a reader type the way support_status does in the XML
+    * configuration file.
+    * @param type
+    *     Reader type, null if not set
+    * @return
+    *     Name of the type, null if it is not set or not narrowed down to
+    *     one type, or a name support_status never lists if it has none
+    */
+    private static String getReaderCode(ReaderType type) {
+        if (type == null) {
+            return null;
+        }
+
+        switch (type) {
+            case UNKNOWN:
+            case UM_OR_PRO:
+                return null;
+            case UM:
+                return "um2g";
+            case UM_PRO:
+                return "ump";
+            case UM_II:
+                return "um2";
+            case SHUTTLE:
+                return "shuttle";
+            default:
+                return type.name();
+        }
+    }
+
+    /**
+    * Find this device's settings in the compiled profile index, compiling
+    * it from the XML configuration file first if needed. Only used if the
+    * XML lists the current reader type as fully supported on this device,
+    * or every reader type it lists if none is set, the SDK applying its
+    * own rules otherwise.
+    * @return
+    *     Profile to connect with, or null if the SDK should load the XML
+    *     file itself
+    */
+    private StructConfigParameters getIndexedProfile() {
+        awaitPreload();
+
+        if (profileIndex == null) {
+            profileIndex = loadProfileIndex();
+
+            if (profileIndex == null) {
+                return null;
+            }
+        }
+
+        int[] entry = profileIndex.lookup(Build.MANUFACTURER, Build.MODEL, getReaderCode(readerType));
+        if (entry == null) {
+            return null;
+        }
+
+        // Start from SDK defaults and apply only what the XML specified
+        StructConfigParameters indexedProfile = new StructConfigParameters();
+
+        if (ProfileIndex.has(entry, ProfileIndex.DIRECTION_OUTPUT_WAVE)) {
+            indexedProfile.setDirectionOutputWave((short) entry[ProfileIndex.DIRECTION_OUTPUT_WAVE]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.FREQUENCE_INPUT)) {
+            indexedProfile.setFrequenceInput(entry[ProfileIndex.FREQUENCE_INPUT]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.FREQUENCE_OUTPUT)) {
+            indexedProfile.setFrequenceOutput(entry[ProfileIndex.FREQUENCE_OUTPUT]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.BAUD_RATE)) {
+            indexedProfile.setBaudRate(entry[ProfileIndex.BAUD_RATE]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.RECORD_BUFFER_SIZE)) {
+            indexedProfile.setRecordBufferSize(entry[ProfileIndex.RECORD_BUFFER_SIZE]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.RECORD_READ_BUFFER_SIZE)) {
+            indexedProfile.setRecordReadBufferSize(entry[ProfileIndex.RECORD_READ_BUFFER_SIZE]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.POWERUP_LAST_BEFORE_CMD)) {
+            indexedProfile.setPowerupLastBeforeCMD((short) entry[ProfileIndex.POWERUP_LAST_BEFORE_CMD]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.VOLUME_LEVEL_ADJUST)) {
+            indexedProfile.setVolumeLevelAdjust((short) entry[ProfileIndex.VOLUME_LEVEL_ADJUST]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.FORCE_HEADSET_PLUG)) {
+            indexedProfile.setForceHeadsetPlug((short) entry[ProfileIndex.FORCE_HEADSET_PLUG]);
+        }
+        if (ProfileIndex.has(entry, ProfileIndex.USE_VOICE_RECOGNITION)) {
+            indexedProfile.setUseVoiceRecognition((short) entry[ProfileIndex.USE_VOICE_RECOGNITION]);
+        }
+
+        return indexedProfile;
+    }
+
+    /**
+    * Read the compiled profile index from app storage, or compile it from
+    * the XML configuration file the first time its content is seen.
+    * @return
+    *     The index, or null if it could not be compiled
+    */
+    private ProfileIndex loadProfileIndex() {
+        long stamp = xmlConfig.getContentHash();
+        File indexFile = new File(context.getFilesDir(), PROFILE_INDEX_FILE);
+
+        ProfileIndex index = ProfileIndex.read(indexFile, stamp, diagnostics);
+        if (index != null) {
+            return index;
+        }
+
+        InputStream in = null;
+        try {
+            in = xmlConfig.open();
+            index = ProfileIndex.compile(in, stamp);
+            index.write(indexFile, diagnostics);
+            return index;
+        } catch (Exception e) {
+            logError(e);
+            return null;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    logError(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Store profile retrieved by Auto Config process so it can be loaded
+     * each time app is opened with the same device, OS version and reader
+     * type.
+     *
+     * @param profile
+     *        Profile from Auto Config
+     * @return
+     *         True if store was successful
+     */
+    private boolean storeAutoConfigProfile(StructConfigParameters profile) {
+        // Check that profile is valid
+        if (profile == null) {
+            return false;
+        }
+
+        String key = autoConfigProfileKey != null ? autoConfigProfileKey : getProfileKey();
+
+        ProfileStore store = getProfileStore();
+        store.put(key, ProfileCodec.toFields(profile));
+        profileVersion++;
+
+        return store.write(new File(context.getFilesDir(), PROFILE_STORE_FILE), diagnostics);
+    }
+
+    /**
+     * Finds the profile retrieved by Auto Config for the current device,
+     * OS version and reader type.
+     * @return
+     *     Profile to connect with, or null if Auto Config has not been run
+     *     for this combination
+     */
+    private StructConfigParameters getStoredProfile() {
+        int[] fields = getProfileStore().get(getProfileKey());
+
+        return fields != null ? ProfileCodec.fromFields(fields) : null;
+    }
+
+    /**
+     * Key of the profile for the current device, OS version and reader type.
+     */
+    private String getProfileKey() {
+        return ProfileStore.key(Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT,
+                                readerType != null ? readerType.name() : null);
+    }
+
+    /**
+     * Loads the stored profiles the first time they are needed, moving the
+     * single profile kept in SharedPreferences by earlier versions into the
+     * store.
+     * @return
+     *     The profile store
+     */
+    private ProfileStore getProfileStore() {
+        awaitPreload();
+
+        if (profileStore == null) {
+            profileStore = loadProfileStore();
+        }
+        return profileStore;
+    }
+
+    /**
+     * Reads the stored profiles from app storage.
+     * @return
+     *     The profile store, empty if nothing was stored
+     */
+    private ProfileStore loadProfileStore() {
+        File storeFile = new File(context.getFilesDir(), PROFILE_STORE_FILE);
+        ProfileStore store = ProfileStore.read(storeFile, diagnostics);
+
+        SharedPreferences profilePrefs = context.getSharedPreferences(PROFILE_PREFS, Context.MODE_PRIVATE);
+
+        if (profilePrefs.getInt(ProfileCodec.KEYS[ProfileCodec.FREQUENCE_INPUT], 0) != 0) {
+            int[] fields = new int[ProfileCodec.FIELD_COUNT];
+            for (int i = 0; i < ProfileCodec.FIELD_COUNT; i++) {
+                fields[i] = profilePrefs.getInt(ProfileCodec.KEYS[i], 0);
+            }
+
+            // The reader type it was found with is unknown
+            String key = ProfileStore.key(Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT, null);
+            if (store.get(key) == null) {
+                store.put(key, fields);
+            }
+
+            if (store.write(storeFile, diagnostics)) {
+                profilePrefs.edit().clear().commit();
+            }
+        }
+
+        return store;
+    }
+
+    /**
+     * Perform either a success or error callback on given CallbackContext
+     * depending on state of msg.
+     * @param callbackContext
+     *        Used when calling back into JavaScript
+     * @param msg
+     *        Error message, or null if success
      */
     private void sendCallback(CallbackContext callbackContext, String msg) {
         // callbackContext will only be null when caller called from
@@ -744,11 +2459,31 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     *        The event name
     */
     private void fireEvent(String event) {
-        fireEvent(event, null);
+        fireEvent(event, (String) null);
+    }
+
+    /**
+    * Send event whose data is encoded straight into the event channel.
+    *
+    * @param event
+    *        The event name
+    * @param data
+    *        Card to send
+    * @param receivedAt
+    *        When the card data arrived, to time its delivery
+    */
+    private void fireEvent(String event, CardEncoder data, long receivedAt) {
+        diagnostics.record(DiagnosticLog.EVENT, event);
+
+        if (!eventChannel.post(event, data, receivedAt)) {
+            webView.sendJavascript(EventEncoder.toJavascript(event, data.toJSONString()));
+            cardDataToDelivery.record(System.nanoTime() - receivedAt);
+        }
     }
 
     /**
-    * Format and send event to JavaScript side.
+    * Send event to JavaScript side, through the event channel once it has
+    * been registered.
     * 
     * @param event
     *        The event name
@@ -756,12 +2491,134 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
     *        Details about the event
     */
     private void fireEvent(String event, String data) {
-        String dataArg = data != null ? "','" + data + "" : "";
+        diagnostics.record(DiagnosticLog.EVENT, event);
+
+        if (!eventChannel.post(event, data)) {
+            webView.sendJavascript(EventEncoder.toJavascript(event, data));
+        }
+    }
+
+
+    /***************************************************
+    * READER STATE
+    ***************************************************/
+
+
+    /**
+    * Stages a reader goes through. Transitions only happen on the reader
+    * thread, through setState.
+    */
+    private enum ReaderState {
+        // No reader exists
+        RELEASED,
+        // Reader exists but is powering up or was disconnected
+        DISCONNECTED,
+        // Reader is connected and idle
+        CONNECTED,
+        // Reader is waiting for a card to be swiped
+        SWIPING,
+        // Auto Config is searching for a profile
+        AUTO_CONFIG
+    }
 
-        String js = "cordova.plugins.unimag.swiper.fireEvent('" + 
-                        event + dataArg + "');";
 
-        webView.sendJavascript(js);
+    /**
+    * Reader of a type switched away from, with the profile version it
+    * was configured under.
+    */
+    private static class ParkedReader {
+        final ReaderDriver reader;
+        final ReaderListener listener;
+        final int profileVersion;
+
+        ParkedReader(ReaderDriver reader, ReaderListener listener, int profileVersion) {
+            this.reader = reader;
+            this.listener = listener;
+            this.profileVersion = profileVersion;
+        }
+    }
+
+
+    /***************************************************
+    * READER LISTENER CLASS
+    ***************************************************/
+
+
+    /**
+    * Receives the callbacks of one reader. Each reader gets its own, so
+    * callbacks a reader makes after being parked or released, which the
+    * SDK may still deliver, can be told from those of the current reader.
+    */
+    private class ReaderListener implements uniMagReaderMsg {
+        @Override
+        public void onReceiveMsgToConnect() {
+            UnimagSwiper.this.onReceiveMsgToConnect(this);
+        }
+
+        @Override
+        public void onReceiveMsgConnected() {
+            UnimagSwiper.this.onReceiveMsgConnected(this);
+        }
+
+        @Override
+        public void onReceiveMsgDisconnected() {
+            UnimagSwiper.this.onReceiveMsgDisconnected(this);
+        }
+
+        @Override
+        public void onReceiveMsgTimeout(String strTimeoutMsg) {
+            UnimagSwiper.this.onReceiveMsgTimeout(this, strTimeoutMsg);
+        }
+
+        @Override
+        public void onReceiveMsgProcessingCardData() {
+            UnimagSwiper.this.onReceiveMsgProcessingCardData(this);
+        }
+
+        @Override
+        public void onReceiveMsgCardData(byte flagOfCardData, byte[] cardData) {
+            UnimagSwiper.this.onReceiveMsgCardData(this, flagOfCardData, cardData);
+        }
+
+        @Override
+        public void onReceiveMsgFailureInfo(int index, String strMessage) {
+            UnimagSwiper.this.onReceiveMsgFailureInfo(this, index, strMessage);
+        }
+
+        @Override
+        public boolean getUserGrant(int nType, String strMessage) {
+            return UnimagSwiper.this.getUserGrant(nType, strMessage);
+        }
+
+        @Override
+        public void onReceiveMsgAutoConfigCompleted(StructConfigParameters profile) {
+            UnimagSwiper.this.onReceiveMsgAutoConfigCompleted(this, profile);
+        }
+
+        @Override
+        public void onReceiveMsgAutoConfigProgress(int progressValue) {
+            UnimagSwiper.this.onReceiveMsgAutoConfigProgress(this, progressValue);
+        }
+
+        @Override
+        public void onReceiveMsgAutoConfigProgress(int percent, double result, String profileName) {
+            UnimagSwiper.this.onReceiveMsgAutoConfigProgress(this, percent, result, profileName);
+        }
+
+        // Unused callbacks
+
+        @Override
+        public void onReceiveMsgToSwipeCard() {}
+
+        @Override
+        public void onReceiveMsgCommandResult(int commandID, byte[] cmdReturn) {}
+
+        @Override
+        public void onReceiveMsgToCalibrateReader() {}
+
+        @Override
+        @Deprecated
+        public void onReceiveMsgSDCardDFailed(String strMSRData) {}
     }
 
 
@@ -785,22 +2642,20 @@ public class UnimagSwiper extends CordovaPlugin implements uniMagReaderMsg {
         */
         @Override
         public void onReceive(Context context, Intent intent) {
-            try {
-                String action = intent.getAction();
-
-                // Headset plugged in or removed
-                if (Intent.ACTION_HEADSET_PLUG.equals(action)) {
-                    if (intent.getIntExtra("state", 0) == 1) {
-                        // Swiper was plugged in
-                        startUnimagSwiper();
-                    } else {
-                        // Swiper was unplugged
-                        stopUnimagSwiper();
+            String action = intent.getAction();
+
+            // Headset plugged in or removed
+            if (Intent.ACTION_HEADSET_PLUG.equals(action)) {
+                final boolean plugged = intent.getIntExtra("state", 0) == 1;
+                final long receivedAt = System.nanoTime();
+
+                // Reader is rebuilt off the main thread
+                post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onHeadsetPlug(plugged, receivedAt);
                     }
-                }
-            } catch(Exception e) {
-                e.printStackTrace();
-                stopUnimagSwiper();
+                });
             }
         }
     }
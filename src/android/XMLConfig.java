@@ -0,0 +1,254 @@
+package com.wodify.cordova.plugin.unimagswiper;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.zip.CRC32;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+
+/**
+* Gives the SDK access to the XML configuration file bundled as a raw
+* resource. The file is extracted to app storage once per content hash,
+* so repeated connections only need to check that it still exists.
+*/
+final class XMLConfig {
+
+    // Name of the raw resource holding the XML file
+    private final static String RESOURCE_NAME = "idt_unimagcfg";
+
+    // Prefix of extracted file names, followed by the content hash
+    private final static String FILE_PREFIX = "IDT_uniMagCfg";
+
+    // Store name of file caching the content hash between launches
+    private final static String CONFIG_PREFS = "XMLConfig";
+
+    // Size of buffer used to stream the resource
+    private final static int BUFFER_SIZE = 8192;
+
+    // Content hash of the bundled XML file, 0 until computed. Shared by
+    // all instances, so guarded by the class rather than the instance
+    private static long contentHash = 0;
+
+    // Path of the extracted XML file, null until extracted
+    private static String filePath = null;
+
+    // Reference to application context for resource purposes
+    private final Context context;
+
+    // Receives extraction and hashing failures
+    private final DiagnosticLog log;
+
+    XMLConfig(Context context, DiagnosticLog log) {
+        this.context = context;
+        this.log = log;
+    }
+
+    /**
+    * Find the resource ID of the bundled XML file.
+    * @return
+    *     Raw resource ID.
+    */
+    int getResId() {
+        return context.getResources().getIdentifier(RESOURCE_NAME, "raw",
+                                                    context.getPackageName());
+    }
+
+    /**
+    * Open the bundled XML file.
+    * @return
+    *     Stream of the raw resource, to be closed by the caller.
+    */
+    InputStream open() {
+        return context.getResources().openRawResource(getResId());
+    }
+
+    /**
+    * Identify the content of the bundled XML file. The hash is only
+    * recomputed when the app has been installed or updated since it was
+    * last stored.
+    * @return
+    *     Content hash, combining length and CRC-32 of the file
+    */
+    long getContentHash() {
+        synchronized (XMLConfig.class) {
+            if (contentHash != 0) {
+                return contentHash;
+            }
+
+            long installStamp = getInstallStamp();
+            SharedPreferences configPrefs = context.getSharedPreferences(CONFIG_PREFS, Context.MODE_PRIVATE);
+
+            if (installStamp != 0 && configPrefs.getLong("install_stamp", 0) == installStamp) {
+                contentHash = configPrefs.getLong("content_hash", 0);
+            }
+
+            if (contentHash == 0) {
+                contentHash = computeContentHash();
+
+                if (contentHash != 0) {
+                    configPrefs.edit()
+                        .putLong("install_stamp", installStamp)
+                        .putLong("content_hash", contentHash)
+                        .commit();
+                }
+            }
+
+            return contentHash;
+        }
+    }
+
+    /**
+    * Find path to XML configuration file for swiper, extracting it the
+    * first time this version of the file is requested.
+    * @return
+    *     File name with path, or null if it could not be extracted.
+    */
+    String getFile() {
+        synchronized (XMLConfig.class) {
+            if (filePath != null && new File(filePath).isFile()) {
+                return filePath;
+            }
+
+            long hash = getContentHash();
+            File configFile = new File(context.getFilesDir(),
+                                        FILE_PREFIX + "_" + Long.toHexString(hash) + ".xml");
+
+            if (hash == 0 || !configFile.isFile()) {
+                if (!extract(configFile)) {
+                    return null;
+                }
+                deleteStaleFiles(configFile);
+            }
+
+            filePath = configFile.getPath();
+            return filePath;
+        }
+    }
+
+    /**
+    * Stream the raw resource into a file through a small buffer.
+    * @param  configFile
+    *         Destination file
+    * @return
+    *         True if the file was written completely
+    */
+    private boolean extract(File configFile) {
+        File tmp = new File(configFile.getPath() + ".tmp");
+        InputStream in = null;
+        FileOutputStream out = null;
+
+        try {
+            in = open();
+            out = new FileOutputStream(tmp);
+
+            ReadableByteChannel src = Channels.newChannel(in);
+            FileChannel dst = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+            while (src.read(buffer) != -1) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    dst.write(buffer);
+                }
+                buffer.clear();
+            }
+
+            out.getFD().sync();
+            out.close();
+            out = null;
+
+            // Rename so the SDK never sees a partially written file
+            return tmp.renameTo(configFile);
+        } catch (Exception e) {
+            log.recordError(e);
+            tmp.delete();
+            return false;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+        }
+    }
+
+    /**
+    * Remove files extracted for previous versions of the XML file.
+    * @param current
+    *        File to keep
+    */
+    private void deleteStaleFiles(File current) {
+        File[] files = context.getFilesDir().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        for (File file : files) {
+            if (file.getName().startsWith(FILE_PREFIX) && !file.equals(current)) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+    * Read the raw resource once to hash its content.
+    * @return
+    *     Content hash, or 0 if the resource could not be read
+    */
+    private long computeContentHash() {
+        InputStream in = null;
+
+        try {
+            in = open();
+
+            CRC32 crc = new CRC32();
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long length = 0;
+            int read;
+
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                length += read;
+            }
+
+            return (length << 32) | crc.getValue();
+        } catch (Exception e) {
+            log.recordError(e);
+            return 0;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    /**
+    * The bundled XML file can only change when the app is installed or
+    * updated.
+    * @return
+    *     Time of last install or update, or 0 if unknown
+    */
+    private long getInstallStamp() {
+        try {
+            return context.getPackageManager()
+                .getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            log.recordError(e);
+            return 0;
+        }
+    }
+
+    private void closeQuietly(Closeable c) {
+        if (c != null) {
+            try {
+                c.close();
+            } catch (IOException e) {
+                log.recordError(e);
+            }
+        }
+    }
+}
@@ -1,4 +1,5 @@
-var exec = require('cordova/exec');
+var exec = require('cordova/exec'),
+	channel = require('cordova/channel');
 
 var getReaderTypes = function() {
 	if (device.platform == 'Android') {
@@ -32,6 +33,72 @@ Swiper.swipe = function (success, error) {
 	exec(success, error, 'UnimagSwiper', 'swipe', []);
 };
 
+Swiper.startContinuousSwipe = function (success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'startContinuousSwipe', []);
+	}
+};
+
+Swiper.stopContinuousSwipe = function (success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'stopContinuousSwipe', []);
+	}
+};
+
+Swiper.setSwipeTimeout = function (seconds, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'setSwipeTimeout', [seconds]);
+	}
+};
+
+Swiper.configureIdleCycle = function (idleAfterMs, listenSeconds, maxSleepMs, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'configureIdleCycle', [idleAfterMs, listenSeconds, maxSleepMs]);
+	}
+};
+
+Swiper.wakeReader = function (success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'wakeReader', []);
+	}
+};
+
+Swiper.getSwipeStats = function (success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'getSwipeStats', []);
+	}
+};
+
+Swiper.configureSwipeQueue = function (capacity, policy, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'configureSwipeQueue', [capacity, policy]);
+	}
+};
+
+Swiper.ackSwipe = function (swipeId, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'ackSwipe', [swipeId]);
+	}
+};
+
+Swiper.configureDuplicateFilter = function (windowMs, mode, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'configureDuplicateFilter', [windowMs, mode]);
+	}
+};
+
+Swiper.enableSwipeJournal = function (enable, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'enableSwipeJournal', [enable]);
+	}
+};
+
+Swiper.ackJournal = function (journalSeq, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'ackJournal', [journalSeq]);
+	}
+};
+
 Swiper.enableLogs = function (enable, success, error) {
 	exec(success, error, 'UnimagSwiper', 'enableLogs', [enable]);
 };
@@ -49,6 +116,36 @@ Swiper.autoConfig = function (success, error) {
 	}
 };
 
+Swiper.setPlugDebounce = function (millis, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'setPlugDebounce', [millis]);
+	}
+};
+
+Swiper.setPauseGracePeriod = function (millis, success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'setPauseGracePeriod', [millis]);
+	}
+};
+
+Swiper.getMetrics = function (success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'getMetrics', []);
+	}
+};
+
+Swiper.exportLogs = function (success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'exportLogs', []);
+	}
+};
+
+Swiper.getEncoderStats = function (success, error) {
+	if (device.platform == 'Android') {
+		exec(success, error, 'UnimagSwiper', 'getEncoderStats', []);
+	}
+};
+
 Swiper.fireEvent = function (event, data) {
 	var customEvent = new CustomEvent(event, { 'detail': data} );
 	window.dispatchEvent(customEvent);
@@ -58,6 +155,23 @@ Swiper.on = function (event, callback, scope) {
 	window.addEventListener(event, callback.bind(scope || window));
 };
 
+// Native side delivers events in batches through one kept callback,
+// each batch being a JSON array of { event: ..., data: ... } messages.
+var dispatchEvents = function (messages) {
+	var events = JSON.parse(messages);
+	for (var i = 0; i < events.length; i++) {
+		Swiper.fireEvent(events[i].event, events[i].data);
+	}
+};
+
+channel.onCordovaReady.subscribe(function () {
+	if (cordova.platformId != 'android') return;
+
+	exec(dispatchEvents, function (error) {
+		console.log('Could not register event channel - ' + error);
+	}, 'UnimagSwiper', 'registerEventChannel', []);
+});
+
 module.exports = Swiper;
 
 /*